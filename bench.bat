@@ -0,0 +1,3 @@
+del /s /q *.class
+javac src/main/Driver.java -cp src
+java -classpath src main.Driver %1 bench %2 %3 %4 %5 %6 %7 %8 %9
\ No newline at end of file
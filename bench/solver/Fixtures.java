@@ -0,0 +1,80 @@
+package solver;
+
+import reader.FileReader;
+import reader.MapData;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Benchmark inputs built from a level in the maps directory: the solver's per-level structures and a
+ * fixed set of reachable states, sampled by random push walks from the initial position so that the
+ * states look like the ones a real search expands.
+ */
+class Fixtures {
+	private static final long SEED = 42;
+	// pushes before a walk starts over, so that the samples are not all near the start or all stuck
+	private static final int WALK_LENGTH = 60;
+
+	final String name;
+	final Board board;
+	final MapAnalysis analysis;
+	final Zobrist zobrist;
+	final PushExpander expander;
+	final DeadlockDetector deadlocks;
+	final PushNode[] states;
+	// a region-normalized player cell and full hash for each state, as the table sees them
+	final int[] regions;
+	final long[] hashes;
+
+	Fixtures(String name, int stateCount) {
+		MapData mapData = new FileReader().readFile(name);
+		if (mapData == null) {
+			throw new IllegalArgumentException("No such map: " + name);
+		}
+
+		this.name = name;
+		this.board = new Board(mapData.columns, mapData.rows, mapData.getMapLayer(), mapData.getItemsLayer());
+		this.analysis = new MapAnalysis(board);
+		this.zobrist = new Zobrist(board.size);
+		this.deadlocks = new DeadlockDetector(analysis, EnumSet.allOf(PruneRule.class));
+		this.expander = new PushExpander(analysis, zobrist, new LowerBound(analysis, HeuristicMode.MATCHING), deadlocks);
+		this.states = sample(stateCount);
+		this.regions = new int[states.length];
+		this.hashes = new long[states.length];
+		for (int i = 0; i < states.length; i++) {
+			regions[i] = expander.region(states[i]);
+			hashes[i] = expander.hash(states[i], regions[i]);
+		}
+	}
+
+	PushNode state(int i) {
+		return states[i & (states.length - 1)];
+	}
+
+	// random push walks from the root; stateCount must be a power of two so state(i) can mask
+	private PushNode[] sample(int stateCount) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		PushNode root = expander.root();
+		PushNode[] children = new PushNode[expander.maxChildren()];
+		List<PushNode> samples = new ArrayList<>();
+
+		PushNode n = root;
+		int steps = 0;
+		while (samples.size() < stateCount) {
+			samples.add(n);
+			expander.region(n);
+			int count = expander.expand(n, children);
+			if (count == 0 || ++steps == WALK_LENGTH) {
+				n = root;
+				steps = 0;
+			} else {
+				// keep only what the sample needs, not the whole walk
+				PushNode child = children[random.nextInt(count)];
+				n = new PushNode(child.player, child.boxes, child.boxHash, child.pushes, child.boxFrom, child.dir, null, child.hcost);
+			}
+		}
+		return samples.toArray(new PushNode[0]);
+	}
+}
@@ -0,0 +1,166 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Microbenchmarks of the solver's inner loops on states sampled from real levels: successor generation,
+ * player-region normalization, hashing and keying, keeping box sets sorted, the lower bounds, the
+ * deadlock checks and the transposition table. Run with
+ *
+ *   java -cp src;bench solver.HotPathBenchmarks [maps=original1,fiveboxes3] [warmup=3] [iterations=5] [time=500] [name regex...]
+ */
+public class HotPathBenchmarks {
+	private static final String MAPS_ARG = "maps=", WARMUP_ARG = "warmup=", ITERATIONS_ARG = "iterations=", TIME_ARG = "time=";
+	private static final String DEFAULT_MAPS = "original1,fiveboxes3";
+	private static final int STATES = 4096;
+
+	private static final Map<String, Function<Fixtures, Microbench.Op>> BENCHMARKS = new LinkedHashMap<>();
+
+	static {
+		// region normalization has to run first on every node, so it is part of generating its children
+		BENCHMARKS.put("expand", f -> {
+			PushNode[] out = new PushNode[f.expander.maxChildren()];
+			return i -> {
+				PushNode n = f.state(i);
+				f.expander.region(n);
+				return f.expander.expand(n, out);
+			};
+		});
+		// the arena-backed search's path, which writes children into reused rows and should allocate nothing
+		BENCHMARKS.put("expandInto", f -> {
+			Successors out = f.expander.newSuccessors();
+			return i -> {
+				PushNode n = f.state(i);
+				f.expander.region(n);
+				f.expander.expand(n.boxes, n.boxHash, out);
+				return out.count;
+			};
+		});
+		BENCHMARKS.put("reach", f -> {
+			Reach reach = new Reach(f.board);
+			return i -> {
+				PushNode n = f.state(i);
+				return reach.fill(n.player, n.boxes);
+			};
+		});
+		BENCHMARKS.put("hashBoxes", f -> i -> f.zobrist.hashBoxes(f.state(i).boxes));
+		BENCHMARKS.put("hashMove", f -> i -> {
+			PushNode n = f.state(i);
+			return f.zobrist.withPlayer(f.zobrist.moveBox(n.boxHash, n.boxes[0], n.player), n.player);
+		});
+		BENCHMARKS.put("pack", f -> {
+			long[] key = new long[StateTable.wordsFor(f.board.getBoxCount())];
+			return i -> {
+				StateTable.pack(f.regions[i & (STATES - 1)], f.state(i).boxes, key, 0);
+				return key[0];
+			};
+		});
+		BENCHMARKS.put("moveBox", f -> {
+			int[] moved = new int[f.board.getBoxCount()];
+			return i -> {
+				PushNode n = f.state(i);
+				Board.moveBox(n.boxes, i % moved.length, f.board.targets[(i >>> 3) % moved.length], moved);
+				return moved[0];
+			};
+		});
+		BENCHMARKS.put("matching", f -> {
+			Heuristic bound = new LowerBound(f.analysis, HeuristicMode.MATCHING);
+			return i -> bound.estimate(f.state(i).player, f.state(i).boxes);
+		});
+		BENCHMARKS.put("nearest", f -> {
+			Heuristic bound = new LowerBound(f.analysis, HeuristicMode.NEAREST);
+			return i -> bound.estimate(f.state(i).player, f.state(i).boxes);
+		});
+		BENCHMARKS.put("deadlock", f -> i -> {
+			PushNode n = f.state(i);
+			return f.deadlocks.check(n.boxes, n.boxes[i % n.boxes.length]) == null ? 0 : 1;
+		});
+		BENCHMARKS.put("tableGet", f -> {
+			StateTable table = new StateTable(f.board.getBoxCount());
+			for (int k = 0; k < STATES; k++) {
+				table.put(f.regions[k], f.states[k].boxes, f.hashes[k], k);
+			}
+			return i -> {
+				int k = i & (STATES - 1);
+				return table.get(f.regions[k], f.states[k].boxes, f.hashes[k]);
+			};
+		});
+		BENCHMARKS.put("offHeapGet", f -> {
+			StateStore table;
+			try {
+				table = new OffHeapStateTable(f.board.getBoxCount(), STATES * 2);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			for (int k = 0; k < STATES; k++) {
+				table.put(f.regions[k], f.states[k].boxes, f.hashes[k], k);
+			}
+			return i -> {
+				int k = i & (STATES - 1);
+				return table.get(f.regions[k], f.states[k].boxes, f.hashes[k]);
+			};
+		});
+		// the table is cleared after every pass over the states, so this measures inserts into a table that never grows
+		BENCHMARKS.put("tablePut", f -> {
+			StateTable table = new StateTable(f.board.getBoxCount(), STATES * 2);
+			return i -> {
+				int k = i & (STATES - 1);
+				if (k == 0) {
+					table.clear();
+				}
+				table.put(f.regions[k], f.states[k].boxes, f.hashes[k], k);
+				return table.size();
+			};
+		});
+	}
+
+	public static void main(String[] args) {
+		String maps = DEFAULT_MAPS;
+		int warmups = 3, iterations = 5;
+		long millis = 500;
+		List<String> filters = new ArrayList<>();
+
+		for (String arg : args) {
+			if (arg.startsWith(MAPS_ARG)) {
+				maps = arg.substring(MAPS_ARG.length());
+			} else if (arg.startsWith(WARMUP_ARG)) {
+				warmups = Integer.parseInt(arg.substring(WARMUP_ARG.length()));
+			} else if (arg.startsWith(ITERATIONS_ARG)) {
+				iterations = Integer.parseInt(arg.substring(ITERATIONS_ARG.length()));
+			} else if (arg.startsWith(TIME_ARG)) {
+				millis = Long.parseLong(arg.substring(TIME_ARG.length()));
+			} else {
+				filters.add(arg);
+			}
+		}
+
+		Microbench bench = new Microbench(warmups, iterations, millis);
+		System.out.println(Microbench.header());
+		for (String map : maps.split(",")) {
+			Fixtures fixtures = new Fixtures(map, STATES);
+			for (Map.Entry<String, Function<Fixtures, Microbench.Op>> entry : BENCHMARKS.entrySet()) {
+				if (selected(entry.getKey(), filters)) {
+					System.out.println(bench.run(entry.getKey(), map, entry.getValue().apply(fixtures)));
+				}
+			}
+		}
+	}
+
+	private static boolean selected(String name, List<String> filters) {
+		if (filters.isEmpty()) {
+			return true;
+		}
+		for (String filter : filters) {
+			if (name.matches(filter)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,91 @@
+package solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/*
+ * A small stand-in for JMH: runs an operation in timed warm-up and measurement iterations and reports
+ * the average time per call with its spread, plus the bytes the calling thread allocated per call.
+ * Results are fed into a sink so the JIT cannot drop the work as dead code.
+ */
+public class Microbench {
+	/* The measured operation; i counts calls, so fixtures can be cycled through without a modulo in the caller */
+	public interface Op {
+		long run(int i);
+	}
+
+	// calls between reads of the clock, so the clock itself does not show up in the score
+	private static final int BATCH = 1024;
+
+	private final int warmups;
+	private final int iterations;
+	private final long iterationNanos;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean countsAllocation;
+	private long elapsed;
+	private volatile long sink;
+
+	public Microbench(int warmups, int iterations, long iterationMillis) {
+		this.warmups = warmups;
+		this.iterations = iterations;
+		this.iterationNanos = iterationMillis * 1_000_000L;
+		this.countsAllocation = threads instanceof com.sun.management.ThreadMXBean counting
+				&& counting.isThreadAllocatedMemorySupported();
+	}
+
+	public static String header() {
+		return String.format(Locale.ROOT, "%-14s %-12s %4s %12s %10s %7s %12s", "Benchmark", "Map", "Cnt", "Score", "Error",
+				"Units", "Alloc");
+	}
+
+	/* Runs the operation and returns its result line */
+	public String run(String name, String map, Op op) {
+		for (int i = 0; i < warmups; i++) {
+			iteration(op);
+		}
+
+		double[] scores = new double[iterations];
+		long allocated = 0, calls = 0;
+		for (int i = 0; i < iterations; i++) {
+			long before = allocatedBytes();
+			long done = iteration(op);
+			allocated += allocatedBytes() - before;
+			calls += done;
+			scores[i] = (double) elapsed / done;
+		}
+
+		double mean = 0, variance = 0;
+		for (double score : scores) {
+			mean += score / scores.length;
+		}
+		for (double score : scores) {
+			variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+		}
+		String alloc = !countsAllocation ? "n/a" : String.format(Locale.ROOT, "%.1f B/op", (double) allocated / calls);
+		return String.format(Locale.ROOT, "%-14s %-12s %4d %12.1f +- %7.1f %7s %12s", name, map, iterations, mean,
+				Math.sqrt(variance), "ns/op", alloc);
+	}
+
+	// calls the operation in batches until the iteration's time is up and returns how many calls were made
+	private long iteration(Op op) {
+		long result = 0, calls = 0;
+		long start = System.nanoTime(), now;
+		int i = 0;
+		do {
+			for (int b = 0; b < BATCH; b++) {
+				result += op.run(i++);
+			}
+			calls += BATCH;
+			now = System.nanoTime();
+		} while (now - start < iterationNanos);
+		elapsed = now - start;
+		sink += result;
+		return calls;
+	}
+
+	// bytes allocated by this thread so far, or 0 where the JVM cannot tell
+	private long allocatedBytes() {
+		return countsAllocation ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+}
@@ -0,0 +1,3 @@
+del /s /q *.class
+javac -cp src;bench bench/solver/HotPathBenchmarks.java
+java -classpath src;bench solver.HotPathBenchmarks %*
\ No newline at end of file
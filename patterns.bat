@@ -0,0 +1,3 @@
+del /s /q *.class
+javac src/main/Driver.java -cp src
+java -classpath src main.Driver %1 pdb
\ No newline at end of file
@@ -1,6 +1,8 @@
 package gui;
 
+import solver.SearchMetrics;
 import solver.SokoBot;
+import solver.SolverConfig;
 
 public class BotThread extends Thread {
   private SokoBot sokoBot;
@@ -9,10 +11,14 @@ public class BotThread extends Thread {
   private char[][] mapData;
   private char[][] itemsData;
 
-  private String solution = null;
+  private volatile String solution = null;
 
   public BotThread(int width, int height, char[][] mapData, char[][] itemsData) {
-    sokoBot = new SokoBot();
+    this(width, height, mapData, itemsData, new SolverConfig());
+  }
+
+  public BotThread(int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config) {
+    sokoBot = new SokoBot(config);
     this.width = width;
     this.height = height;
     this.mapData = mapData;
@@ -24,7 +30,18 @@ public class BotThread extends Thread {
     solution = sokoBot.solveSokobanPuzzle(width, height, mapData, itemsData);
   }
 
+  /* Live counters of the bot's search, for showing its progress */
+  public SearchMetrics getMetrics() {
+    return sokoBot.getMetrics();
+  }
+
+  /* Asks the bot to stop searching; the thread ends soon after */
+  public void cancel() {
+    sokoBot.cancel();
+  }
+
+  /* The finished solution, or while the bot is still running, the best one it has found so far */
   public String getSolution() {
-    return solution;
+    return solution != null ? solution : sokoBot.getBestSolution();
   }
 }
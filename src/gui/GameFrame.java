@@ -3,12 +3,17 @@ package gui;
 import javax.swing.JFrame;
 import java.awt.GridLayout;
 import reader.MapData;
+import solver.SolverConfig;
 
 public class GameFrame extends JFrame {
   private GamePanel mainPanel;
   private MapData mapData;
 
   public GameFrame(MapData mapData) {
+    this(mapData, new SolverConfig());
+  }
+
+  public GameFrame(MapData mapData, SolverConfig solverConfig) {
     this.mapData = mapData;
 
     this.setSize(800, 600);
@@ -18,6 +23,7 @@ public class GameFrame extends JFrame {
     this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
     this.mainPanel = new GamePanel();
+    this.mainPanel.setSolverConfig(solverConfig);
     this.add(mainPanel);
 
     this.mainPanel.loadMap(mapData);
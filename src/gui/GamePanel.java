@@ -3,6 +3,9 @@ package gui;
 import javax.swing.JPanel;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.KeyListener;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
@@ -14,6 +17,7 @@ import java.io.File;
 
 import javax.imageio.ImageIO;
 import reader.MapData;
+import solver.SolverConfig;
 
 public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
@@ -34,6 +38,13 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private final int UPPER_LEFT_X = 10;
   private final int UPPER_LEFT_Y = 10;
   private final int TILE_SIZE = 32;
+  // the status bar and the search line above it, which the clock and counters repaint on their own
+  private final int STATUS_AREA_HEIGHT = 52;
+
+  // walls and goals never change while a map is loaded, so they are drawn once into this and copied on every paint
+  private BufferedImage background;
+  // tiles changed since the last repaint request, in panel coordinates, or null when none have
+  private Rectangle dirty;
 
   private boolean freePlay = false;
   private boolean waitingForSpace = false;
@@ -41,15 +52,29 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private int solutionCtr = -1;
 
   private Timer animationTimer;
+  // milliseconds between playback ticks, and the moves played per tick; more than one skips the frames in between
+  private int playbackDelay = DEFAULT_PLAYBACK_DELAY;
+  private int movesPerTick = 1;
+
+  private static final int DEFAULT_PLAYBACK_DELAY = 100;
+  private static final int MIN_PLAYBACK_DELAY = 10;
+  private static final int MAX_PLAYBACK_DELAY = 1600;
+  // playback of a long solution plays several moves per tick so that it takes about this long
+  private static final int MAX_PLAYBACK_MILLIS = 30000;
+  // fast-forward plays the rest of the solution in about this long
+  private static final int FAST_FORWARD_MILLIS = 2000;
 
   private Font statusFont;
   private Font statusValueFont;
+  private Font searchFont;
   private String statusString = "";
+  // live counters of the running search, shown above the status bar while the bot thinks
+  private String searchString = "";
 
   private final String STATUS_WAITING_FOR_SPACE = "Push SPACE to start Bot...";
   private final String STATUS_WAITING_FOR_SOLUTION = "Waiting for solution...";
   private final String STATUS_SOLUTION_TIMEOUT = "TIME'S UP! Bot took too long thinking...";
-  private final String STATUS_PLAYING_SOLUTION = "Playing solution...";
+  private final String STATUS_PLAYING_SOLUTION = "Playing... +/- speed, F skip";
   private final String STATUS_FINISHED_PLAYING_SOLUTION = "SOLUTION FINISHED!";
   private final String STATUS_FREE_PLAY = "FREE PLAY MODE!";
 
@@ -61,6 +86,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private int goalCount = 0;
   private int playerCount = 0;
 
+  private SolverConfig solverConfig = new SolverConfig();
   private BotThread solutionThread;
   private Timer solutionTimer;
   private Timer checkForSolutionTimer;
@@ -68,6 +94,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   private long solutionEndTime;
 
   private final int SOLUTION_TIME_LIMIT = 15000;
+  // the bot is told to stop this much earlier, so that a search stopped by its budget still hands in its best solution
+  private final int SOLUTION_TIME_MARGIN = 250;
 
   public GamePanel() {
     this.setBackground(Color.BLACK);
@@ -76,6 +104,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     this.setFocusable(true);
     this.statusFont = new Font("SansSerif", Font.BOLD, 16);
     this.statusValueFont = new Font("SansSerif", Font.PLAIN, 16);
+    this.searchFont = new Font("SansSerif", Font.PLAIN, 12);
   }
 
   private void loadImages() {
@@ -90,6 +119,10 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     }
   }
 
+  public void setSolverConfig(SolverConfig solverConfig) {
+    this.solverConfig = solverConfig;
+  }
+
   public void loadMap(MapData mapData) {
     progress = 0;
     moves = 0;
@@ -149,6 +182,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
 
     rows = mapData.rows;
     columns = mapData.columns;
+    background = null;
+    dirty = null;
 
     if (playerCount == 1 && boxCount == goalCount && boxCount > 0) {
       freePlay = false;
@@ -161,25 +196,27 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   public void paintComponent(Graphics g) {
     super.paintComponent(g);
 
-    g.clearRect(0, 0, this.getWidth(), this.getHeight());
+    // only the clipped area is drawn, which after a move is just the tiles it changed or the status bar
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+    }
     g.setColor(Color.BLACK);
-    g.fillRect(0, 0, this.getWidth(), this.getHeight());
+    g.fillRect(clip.x, clip.y, clip.width, clip.height);
 
     if (mapLoaded) {
-      for (int i = 0; i < rows; i++) {
-        for (int j = 0; j < columns; j++) {
+      if (background == null) {
+        background = renderBackground();
+      }
+      g.drawImage(background, UPPER_LEFT_X, UPPER_LEFT_Y, this);
+
+      int firstRow = Math.max(0, Math.floorDiv(clip.y - UPPER_LEFT_Y, TILE_SIZE));
+      int lastRow = Math.min(rows - 1, Math.floorDiv(clip.y + clip.height - 1 - UPPER_LEFT_Y, TILE_SIZE));
+      int firstColumn = Math.max(0, Math.floorDiv(clip.x - UPPER_LEFT_X, TILE_SIZE));
+      int lastColumn = Math.min(columns - 1, Math.floorDiv(clip.x + clip.width - 1 - UPPER_LEFT_X, TILE_SIZE));
+      for (int i = firstRow; i <= lastRow; i++) {
+        for (int j = firstColumn; j <= lastColumn; j++) {
           BufferedImage target = null;
-          if (map[i][j] == '#') {
-            target = BRICK_SPRITE;
-          } else if (map[i][j] == '.') {
-            target = GOAL_SPRITE;
-          }
-          if (target != null) {
-            g.drawImage(target, UPPER_LEFT_X + j * TILE_SIZE,
-                UPPER_LEFT_Y + i * TILE_SIZE, TILE_SIZE, TILE_SIZE,
-                this);
-          }
-          target = null;
           if (items[i][j] == '$' && map[i][j] == '.') {
             target = CRATE_ON_GOAL_SPRITE;
           } else if (items[i][j] == '$' && map[i][j] != '.') {
@@ -195,6 +232,14 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         }
       }
 
+      if (!this.searchString.isEmpty()) {
+        g.setColor(new Color(40, 40, 40));
+        g.fillRect(0, this.getHeight() - 52, this.getWidth(), 20);
+        g.setColor(Color.WHITE);
+        g.setFont(this.searchFont);
+        g.drawString(this.searchString, 8, this.getHeight() - 37);
+      }
+
       g.setColor(new Color(150, 214, 124));
       g.fillRect(0, this.getHeight() - 32, this.getWidth(), 32);
       g.setColor(Color.RED);
@@ -211,6 +256,52 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     }
   }
 
+  // draws the walls and goals into an image in the screen's own format, which Java2D can keep in video memory
+  private BufferedImage renderBackground() {
+    int width = columns * TILE_SIZE;
+    int height = rows * TILE_SIZE;
+    GraphicsConfiguration config = this.getGraphicsConfiguration();
+    BufferedImage image = config != null ? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+        : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    Graphics g = image.getGraphics();
+    g.setColor(Color.BLACK);
+    g.fillRect(0, 0, width, height);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        BufferedImage target = null;
+        if (map[i][j] == '#') {
+          target = BRICK_SPRITE;
+        } else if (map[i][j] == '.') {
+          target = GOAL_SPRITE;
+        }
+        if (target != null) {
+          g.drawImage(target, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, null);
+        }
+      }
+    }
+    g.dispose();
+    return image;
+  }
+
+  private void markDirty(int row, int column) {
+    Rectangle tile = new Rectangle(UPPER_LEFT_X + column * TILE_SIZE, UPPER_LEFT_Y + row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+    dirty = dirty == null ? tile : dirty.union(tile);
+  }
+
+  // asks for the tiles changed since the last call and the status bar to be painted, and nothing else
+  private void repaintDirty() {
+    if (dirty != null) {
+      this.repaint(dirty);
+      dirty = null;
+    }
+    repaintStatus();
+  }
+
+  private void repaintStatus() {
+    this.repaint(0, this.getHeight() - STATUS_AREA_HEIGHT, this.getWidth(), STATUS_AREA_HEIGHT);
+  }
+
   public void initiateFreePlay() {
     this.statusString = STATUS_FREE_PLAY;
     waitingForSpace = false;
@@ -260,6 +351,8 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     if (map[ptRow][ptCol] == '#') {
       return;
     }
+    markDirty(playerRow, playerColumn);
+    markDirty(ptRow, ptCol);
     if (items[ptRow][ptCol] != '$') {
       items[playerRow][playerColumn] = ' ';
       items[ptRow][ptCol] = '@';
@@ -272,6 +365,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
       if (map[btRow][btCol] == '#' || items[btRow][btCol] == '$') {
         return;
       }
+      markDirty(btRow, btCol);
       if (map[btRow][btCol] == '.') {
         progress++;
       }
@@ -286,8 +380,6 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
     }
 
     moves++;
-
-    this.repaint();
   }
 
   @Override
@@ -307,6 +399,9 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
           executeMove(3);
           break;
       }
+      repaintDirty();
+    } else if (animationTimer != null && animationTimer.isRunning()) {
+      changePlayback(e.getKeyCode());
     } else if (waitingForSpace) {
       if (e.getKeyCode() == KeyEvent.VK_SPACE) {
         waitingForSpace = false;
@@ -322,7 +417,11 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
           }
         }
 
-        solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy);
+        SolverConfig botConfig = solverConfig.copy();
+        if (botConfig.timeLimitMillis == 0) {
+          botConfig.timeLimitMillis = SOLUTION_TIME_LIMIT - SOLUTION_TIME_MARGIN;
+        }
+        solutionThread = new BotThread(columns, rows, mapDataCopy, itemsDataCopy, botConfig);
         solutionThread.start();
         solutionStartTime = System.nanoTime();
         solutionTimer = new Timer(SOLUTION_TIME_LIMIT, this);
@@ -330,7 +429,7 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
         checkForSolutionTimer = new Timer(30, this);
         checkForSolutionTimer.start();
 
-        this.repaint();
+        repaintStatus();
       }
     }
   }
@@ -346,61 +445,115 @@ public class GamePanel extends JPanel implements KeyListener, ActionListener {
   }
 
   public void playSolution(String solutionString) {
-    playSolution(solutionString, 100);
+    playSolution(solutionString, playbackDelay);
   }
 
   public void playSolution(String solutionString, int delay) {
     freePlay = false;
     this.statusString = STATUS_PLAYING_SOLUTION;
+    this.searchString = "";
     this.solutionString = solutionString;
     this.solutionCtr = 0;
+    this.playbackDelay = delay;
+    this.movesPerTick = movesToFinishWithin(MAX_PLAYBACK_MILLIS);
     this.animationTimer = new Timer(delay, this);
     this.animationTimer.start();
   }
 
+  /* Milliseconds between playback moves; takes effect on a playback already running */
+  public void setPlaybackDelay(int delay) {
+    this.playbackDelay = Math.max(MIN_PLAYBACK_DELAY, Math.min(MAX_PLAYBACK_DELAY, delay));
+    if (animationTimer != null) {
+      animationTimer.setDelay(playbackDelay);
+    }
+  }
+
+  // + and - halve and double the delay between moves, F toggles fast-forward through the rest of the solution
+  private void changePlayback(int keyCode) {
+    switch (keyCode) {
+      case KeyEvent.VK_PLUS:
+      case KeyEvent.VK_ADD:
+      case KeyEvent.VK_EQUALS:
+        setPlaybackDelay(playbackDelay / 2);
+        break;
+      case KeyEvent.VK_MINUS:
+      case KeyEvent.VK_SUBTRACT:
+        setPlaybackDelay(playbackDelay * 2);
+        break;
+      case KeyEvent.VK_F:
+        int fastForward = movesToFinishWithin(FAST_FORWARD_MILLIS);
+        movesPerTick = movesPerTick < fastForward ? fastForward : movesToFinishWithin(MAX_PLAYBACK_MILLIS);
+        break;
+    }
+  }
+
+  // moves to play per tick so that the rest of the solution plays in about the given time
+  private int movesToFinishWithin(int millis) {
+    long remaining = (long) (solutionString.length() - solutionCtr) * playbackDelay;
+    return (int) Math.max(1, (remaining + millis - 1) / millis);
+  }
+
   @Override
   public void actionPerformed(ActionEvent e) {
     if (e.getSource() == animationTimer) {
       if (this.solutionCtr >= this.solutionString.length()) {
         this.animationTimer.stop();
         this.statusString = STATUS_FINISHED_PLAYING_SOLUTION;
-        this.repaint();
+        repaintStatus();
         return;
       }
-      int nextMove = this.solutionString.charAt(this.solutionCtr++);
-      switch (nextMove) {
-        case 'u':
-          executeMove(0);
-          break;
-        case 'd':
-          executeMove(1);
-          break;
-        case 'l':
-          executeMove(2);
-          break;
-        case 'r':
-          executeMove(3);
-          break;
+      // with several moves per tick only the frame after the last of them is painted
+      for (int k = 0; k < movesPerTick && this.solutionCtr < this.solutionString.length(); k++) {
+        int nextMove = this.solutionString.charAt(this.solutionCtr++);
+        switch (nextMove) {
+          case 'u':
+            executeMove(0);
+            break;
+          case 'd':
+            executeMove(1);
+            break;
+          case 'l':
+            executeMove(2);
+            break;
+          case 'r':
+            executeMove(3);
+            break;
+        }
       }
+      repaintDirty();
     } else if (e.getSource() == checkForSolutionTimer) {
       if (!solutionThread.isAlive()) {
-        // Solution was found
+        // The bot is done; it gives up with no solution when its own time limit runs out first
         solutionTimer.stop();
         checkForSolutionTimer.stop();
         String solution = solutionThread.getSolution();
-        this.playSolution(solution);
+        if (solution != null) {
+          this.playSolution(solution);
+        } else {
+          this.statusString = STATUS_SOLUTION_TIMEOUT;
+        }
       }
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0) + "s";
-      this.repaint();
+      if (solutionThread.isAlive()) {
+        this.searchString = solutionThread.getMetrics().snapshot().toString();
+      }
+      // only the clock and the search line changed
+      repaintStatus();
     } else if (e.getSource() == solutionTimer) {
-      // Solution was not found
+      // Solution was not found in time; an anytime search may still have a solution that is not optimal yet
       solutionTimer.stop();
       checkForSolutionTimer.stop();
+      solutionThread.cancel();
       long elapsedSolutionTime = System.nanoTime() - solutionStartTime;
       this.solutionTimeString = String.format("%.2f", elapsedSolutionTime / 1000000000.0);
-      this.statusString = STATUS_SOLUTION_TIMEOUT;
-      this.repaint();
+      String solution = solutionThread.getSolution();
+      if (solution != null) {
+        this.playSolution(solution);
+      } else {
+        this.statusString = STATUS_SOLUTION_TIMEOUT;
+      }
+      repaintStatus();
     }
   }
 }
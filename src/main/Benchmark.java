@@ -0,0 +1,468 @@
+package main;
+
+import reader.FileReader;
+import reader.LevelCollection;
+import reader.MapData;
+import solver.SokoBot;
+import solver.SolveStats;
+import solver.SolverService;
+import solver.SolverConfig;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ * Solves every level in the maps directory whose name matches a glob, each in its own JVM so that a
+ * level that runs out of time or memory cannot take the rest of the run down with it. Results are
+ * printed as a table and can be written as CSV or JSON, and compared against an earlier CSV run.
+ */
+public class Benchmark {
+  private static final String WORKERS_ARG = "workers=";
+  private static final String TIMEOUT_ARG = "timeout=", MEMORY_ARG = "memory=", OUT_ARG = "out=", BASELINE_ARG = "baseline=";
+  private static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+  private static final long DEFAULT_MEMORY_MB = 2048;
+  // extra time for JVM start-up and the solver noticing its deadline before the child is killed
+  private static final long GRACE_MILLIS = 10000;
+  // a level is flagged when it gets this much slower, by at least the given number of milliseconds
+  private static final double SLOWDOWN_RATIO = 1.25;
+  private static final double SLOWDOWN_MILLIS = 50;
+  // marks the child's result line among anything else it prints
+  private static final String RESULT_PREFIX = "RESULT,";
+  private static final String HEADER = "map,status,millis,moves,pushes,expanded,generated,table,tableBytes";
+
+  private static final String SOLVED = "solved", UNSOLVED = "unsolved", TIMEOUT = "timeout", OUT_OF_MEMORY = "oom",
+      INVALID = "invalid", REJECTED = "rejected", FAILED = "error";
+
+  /* One line of the results; fields that do not apply are -1 */
+  static class Result {
+    String map;
+    String status;
+    double millis;
+    long moves = -1, pushes = -1, expanded = -1, generated = -1, table = -1, tableBytes = -1;
+
+    Result(String map, String status) {
+      this.map = map;
+      this.status = status;
+    }
+
+    String toCsv() {
+      return map + "," + status + "," + String.format(Locale.ROOT, "%.1f", millis) + "," + moves + "," + pushes + "," + expanded + ","
+          + generated + "," + table + "," + tableBytes;
+    }
+
+    String toJson() {
+      return String.format(Locale.ROOT, "{\"map\": \"%s\", \"status\": \"%s\", \"millis\": %.1f, \"moves\": %d, \"pushes\": %d, "
+          + "\"expanded\": %d, \"generated\": %d, \"table\": %d, \"tableBytes\": %d}", map, status, millis, moves, pushes, expanded,
+          generated, table, tableBytes);
+    }
+
+    static Result fromCsv(String line) {
+      String[] fields = line.split(",");
+      Result result = new Result(fields[0], fields[1]);
+      result.millis = Double.parseDouble(fields[2]);
+      result.moves = Long.parseLong(fields[3]);
+      result.pushes = Long.parseLong(fields[4]);
+      result.expanded = Long.parseLong(fields[5]);
+      result.generated = Long.parseLong(fields[6]);
+      result.table = Long.parseLong(fields[7]);
+      // baselines written before the column existed have no table size
+      result.tableBytes = fields.length > 8 ? Long.parseLong(fields[8]) : -1;
+      return result;
+    }
+  }
+
+  /* Runs the levels matching the glob; args from the given index are benchmark options and solver settings. Returns the exit code */
+  public static int run(String glob, String[] args, int from) {
+    long timeout = DEFAULT_TIMEOUT_MILLIS, memory = DEFAULT_MEMORY_MB;
+    Path out = null, baseline = null;
+    List<String> settings = new ArrayList<>();
+
+    for (int i = from; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.startsWith(TIMEOUT_ARG)) {
+        timeout = Long.parseLong(arg.substring(TIMEOUT_ARG.length()));
+      } else if (arg.startsWith(MEMORY_ARG)) {
+        memory = Long.parseLong(arg.substring(MEMORY_ARG.length()));
+      } else if (arg.startsWith(OUT_ARG)) {
+        out = Path.of(arg.substring(OUT_ARG.length()));
+      } else if (arg.startsWith(BASELINE_ARG)) {
+        baseline = Path.of(arg.substring(BASELINE_ARG.length()));
+      } else {
+        settings.add(arg);
+      }
+    }
+
+    // fail on bad settings here rather than once per level
+    SolverConfig config = SolverConfig.fromArgs(settings.toArray(new String[0]), 0);
+    settings.add(0, "time=" + timeout);
+    System.out.println("Benchmark: " + config + ", timeout " + timeout + "ms, memory " + memory + "MB");
+
+    List<String> maps = findMaps(glob);
+    if (maps.isEmpty()) {
+      System.err.println("No maps match " + glob);
+      return 1;
+    }
+
+    List<Result> results = new ArrayList<>();
+    System.out.println(HEADER);
+    for (String map : maps) {
+      Result result = runChild(map, settings, timeout, memory);
+      results.add(result);
+      System.out.println(result.toCsv());
+    }
+
+    try {
+      if (out != null) {
+        write(results, out);
+        System.out.println("Wrote " + out);
+      }
+      if (baseline != null) {
+        return compare(read(baseline), results) > 0 ? 2 : 0;
+      }
+    } catch (IOException ex) {
+      System.err.println("Could not write or read results: " + ex.getMessage());
+      return 1;
+    }
+    return 0;
+  }
+
+  /*
+   * Solves the levels matching the glob in this JVM through a SolverService, printing each result as it
+   * finishes. Faster than bench for many small levels, but without its isolation. Returns the exit code.
+   */
+  public static int batch(String glob, String[] args, int from) {
+    int workerCount = Runtime.getRuntime().availableProcessors();
+    long timeout = DEFAULT_TIMEOUT_MILLIS;
+    List<String> settings = new ArrayList<>();
+    for (int i = from; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.startsWith(WORKERS_ARG)) {
+        workerCount = Integer.parseInt(arg.substring(WORKERS_ARG.length()));
+      } else if (arg.startsWith(TIMEOUT_ARG)) {
+        timeout = Long.parseLong(arg.substring(TIMEOUT_ARG.length()));
+      } else {
+        settings.add(arg);
+      }
+    }
+    SolverConfig config = SolverConfig.fromArgs(settings.toArray(new String[0]), 0);
+    config.timeLimitMillis = timeout;
+    System.out.println("Batch: " + config + ", " + workerCount + " workers");
+
+    List<String> maps = findMaps(glob);
+    if (maps.isEmpty()) {
+      System.err.println("No maps match " + glob);
+      return 1;
+    }
+
+    PrintStream console = System.out;
+    console.println(HEADER);
+    // the bots' own progress output would interleave with the results
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try (SolverService service = new SolverService(workerCount, (long) (Runtime.getRuntime().maxMemory() * 0.75))) {
+      for (String map : maps) {
+        MapData mapData = new FileReader().readFile(map);
+        String problem = mapData == null ? "could not be read" : mapData.validate();
+        if (problem != null) {
+          console.println(new Result(map, REJECTED).toCsv());
+          continue;
+        }
+        SolverConfig levelConfig = config.copy();
+        Path patternFile = SolverConfig.patternDatabaseFor(map);
+        if (Files.exists(patternFile)) {
+          levelConfig.patternDatabase = patternFile;
+        }
+        service.submit(map, mapData.columns, mapData.rows, mapData.getMapLayer(), mapData.getItemsLayer(), levelConfig)
+            .thenAccept(solved -> {
+              Result result = solved.getFailure() != null ? new Result(map, FAILED)
+                  : toResult(map, mapData, solved.getSolution(), solved.getStats(), solved.getMillis());
+              synchronized (console) {
+                console.println(result.toCsv());
+              }
+            });
+      }
+    } finally {
+      System.setOut(console);
+    }
+    return 0;
+  }
+
+  /* Compares two CSV runs and returns the exit code, 2 when the newer one has regressions */
+  public static int compare(Path older, Path newer) {
+    try {
+      return compare(read(older), read(newer)) > 0 ? 2 : 0;
+    } catch (IOException ex) {
+      System.err.println("Could not read results: " + ex.getMessage());
+      return 1;
+    }
+  }
+
+  // prints a line for every level in both runs and returns how many of them got worse
+  private static int compare(List<Result> older, List<Result> newer) {
+    Map<String, Result> before = new LinkedHashMap<>();
+    for (Result result : older) {
+      before.put(result.map, result);
+    }
+
+    int regressions = 0;
+    System.out.println("Comparison with the baseline:");
+    for (Result now : newer) {
+      Result then = before.get(now.map);
+      if (then == null) {
+        System.out.println(String.format(Locale.ROOT, "  %-14s new", now.map));
+        continue;
+      }
+
+      String verdict = "";
+      if (then.status.equals(SOLVED) && !now.status.equals(SOLVED)) {
+        verdict = "REGRESSION: " + now.status + ", was solved";
+      } else if (now.status.equals(SOLVED) && !then.status.equals(SOLVED)) {
+        verdict = "now solved, was " + then.status;
+      } else if (now.status.equals(SOLVED)) {
+        if (now.millis > then.millis * SLOWDOWN_RATIO && now.millis - then.millis > SLOWDOWN_MILLIS) {
+          verdict = "REGRESSION: slower";
+        } else if (now.pushes > then.pushes && then.pushes >= 0) {
+          verdict = "REGRESSION: " + now.pushes + " pushes, was " + then.pushes;
+        }
+      }
+      if (verdict.startsWith("REGRESSION")) {
+        regressions++;
+      }
+      System.out.println(String.format(Locale.ROOT, "  %-14s %10.1fms -> %10.1fms  %s", now.map, then.millis, now.millis, verdict));
+    }
+
+    System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+    return regressions;
+  }
+
+  // the names, without .txt, of the levels in the maps directory that match the glob, or with "name:glob"
+  // the numbers of the matching levels in a collection
+  private static List<String> findMaps(String glob) {
+    int separator = glob.lastIndexOf(':');
+    if (separator >= 0) {
+      return findLevels(glob.substring(0, separator), glob.substring(separator + 1));
+    }
+
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    try (Stream<Path> files = Files.list(Path.of("maps"))) {
+      return files.map(file -> file.getFileName().toString())
+          .filter(name -> name.endsWith(".txt"))
+          .map(name -> name.substring(0, name.length() - ".txt".length()))
+          .filter(name -> matcher.matches(Path.of(name)))
+          .sorted()
+          .toList();
+    } catch (IOException ex) {
+      System.err.println("Could not list maps: " + ex.getMessage());
+      return List.of();
+    }
+  }
+
+  private static List<String> findLevels(String collection, String glob) {
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    List<String> levels = new ArrayList<>();
+    try (LevelCollection file = new LevelCollection(FileReader.find(collection))) {
+      for (int i = 1; i <= file.size(); i++) {
+        if (matcher.matches(Path.of(String.valueOf(i)))) {
+          levels.add(collection + ":" + i);
+        }
+      }
+    } catch (IOException ex) {
+      System.err.println("Could not read " + collection + ": " + ex.getMessage());
+    }
+    return levels;
+  }
+
+  // solves one level in a fresh JVM with the memory cap, killing it if it overstays the timeout
+  private static Result runChild(String map, List<String> settings, long timeout, long memory) {
+    List<String> command = new ArrayList<>(Arrays.asList(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-Xmx" + memory + "m",
+        "-cp", System.getProperty("java.class.path"),
+        Benchmark.class.getName(), map));
+    command.addAll(settings);
+
+    try {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      List<String> output = new ArrayList<>();
+      Thread drain = new Thread(() -> {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            output.add(line);
+          }
+        } catch (IOException ex) {
+          // the child was killed; whatever it printed so far is kept
+        }
+      });
+      drain.start();
+
+      if (!process.waitFor(timeout + GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+        process.destroyForcibly().waitFor();
+        Result result = new Result(map, TIMEOUT);
+        result.millis = timeout;
+        return result;
+      }
+      drain.join();
+
+      for (String line : output) {
+        if (line.startsWith(RESULT_PREFIX)) {
+          return Result.fromCsv(line.substring(RESULT_PREFIX.length()));
+        }
+      }
+      System.err.println(map + " exited with code " + process.exitValue() + ":");
+      output.stream().skip(Math.max(0, output.size() - 10)).forEach(line -> System.err.println("  " + line));
+      return new Result(map, FAILED);
+    } catch (IOException ex) {
+      System.err.println("Could not start a JVM for " + map + ": " + ex.getMessage());
+      return new Result(map, FAILED);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return new Result(map, FAILED);
+    }
+  }
+
+  /* Entry point of the child JVM: solves one level with the given settings and prints its result line */
+  public static void main(String[] args) {
+    PrintStream console = System.out;
+    // the solver's own progress output would drown the result line
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+    String map = args[0];
+    Result result;
+    try {
+      result = solve(map, SolverConfig.fromArgs(args, 1));
+    } catch (OutOfMemoryError ex) {
+      result = new Result(map, OUT_OF_MEMORY);
+    }
+    console.println(RESULT_PREFIX + result.toCsv());
+  }
+
+  private static Result solve(String map, SolverConfig config) {
+    MapData mapData = new FileReader().readFile(map);
+    if (mapData == null) {
+      return new Result(map, FAILED);
+    }
+    String problem = mapData.validate();
+    if (problem != null) {
+      System.err.println(map + ": " + problem);
+      return new Result(map, REJECTED);
+    }
+    Path patternFile = SolverConfig.patternDatabaseFor(map);
+    if (Files.exists(patternFile)) {
+      config.patternDatabase = patternFile;
+    }
+
+    SokoBot bot = new SokoBot(config);
+    long start = System.nanoTime();
+    String solution = bot.solveSokobanPuzzle(mapData.columns, mapData.rows, mapData.getMapLayer(), mapData.getItemsLayer());
+    return toResult(map, mapData, solution, bot.getStats(), (System.nanoTime() - start) / 1e6);
+  }
+
+  private static Result toResult(String map, MapData mapData, String solution, SolveStats stats, double millis) {
+    Result result = new Result(map, solution != null ? SOLVED : stats.isStopped() ? TIMEOUT : UNSOLVED);
+    result.millis = millis;
+    result.expanded = stats.getExpanded();
+    result.generated = stats.getGenerated();
+    result.table = stats.getTableEntries();
+    result.tableBytes = stats.getTableBytes();
+    if (solution != null) {
+      result.moves = solution.length();
+      result.pushes = countPushes(mapData, solution);
+      if (result.pushes < 0) {
+        result.status = INVALID;
+      }
+    }
+    return result;
+  }
+
+  // plays the solution on the level and returns how many pushes it makes, or -1 if it does not solve the level
+  private static long countPushes(MapData mapData, String solution) {
+    char[][] items = mapData.getItemsLayer();
+    char[][] map = mapData.getMapLayer();
+    int playerRow = -1, playerCol = -1;
+    for (int i = 0; i < mapData.rows; i++) {
+      for (int j = 0; j < mapData.columns; j++) {
+        if (items[i][j] == '@') {
+          playerRow = i;
+          playerCol = j;
+        }
+      }
+    }
+
+    long pushes = 0;
+    for (char move : solution.toCharArray()) {
+      int dr = move == 'u' ? -1 : move == 'd' ? 1 : 0;
+      int dc = move == 'l' ? -1 : move == 'r' ? 1 : 0;
+      int r = playerRow + dr, c = playerCol + dc;
+      if (!isOpen(map, r, c)) {
+        return -1;
+      }
+      if (items[r][c] == '$') {
+        if (!isOpen(map, r + dr, c + dc) || items[r + dr][c + dc] == '$') {
+          return -1;
+        }
+        items[r + dr][c + dc] = '$';
+        pushes++;
+      }
+      items[r][c] = '@';
+      items[playerRow][playerCol] = ' ';
+      playerRow = r;
+      playerCol = c;
+    }
+
+    for (int i = 0; i < mapData.rows; i++) {
+      for (int j = 0; j < mapData.columns; j++) {
+        if (items[i][j] == '$' && map[i][j] != '.') {
+          return -1;
+        }
+      }
+    }
+    return pushes;
+  }
+
+  private static boolean isOpen(char[][] map, int r, int c) {
+    return r >= 0 && r < map.length && c >= 0 && c < map[r].length && map[r][c] != '#';
+  }
+
+  private static void write(List<Result> results, Path file) throws IOException {
+    try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+      if (file.toString().endsWith(".json")) {
+        writer.println("[");
+        for (int i = 0; i < results.size(); i++) {
+          writer.println("  " + results.get(i).toJson() + (i + 1 < results.size() ? "," : ""));
+        }
+        writer.println("]");
+      } else {
+        writer.println(HEADER);
+        for (Result result : results) {
+          writer.println(result.toCsv());
+        }
+      }
+    }
+  }
+
+  // only CSV runs can be read back
+  private static List<Result> read(Path file) throws IOException {
+    List<Result> results = new ArrayList<>();
+    for (String line : Files.readAllLines(file)) {
+      if (!line.isBlank() && !line.equals(HEADER)) {
+        results.add(Result.fromCsv(line));
+      }
+    }
+    return results;
+  }
+}
@@ -3,21 +3,72 @@ package main;
 import gui.GameFrame;
 import reader.FileReader;
 import reader.MapData;
+import solver.SokoBot;
+import solver.SolverConfig;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class Driver {
   public static void main(String[] args) {
     if (args.length < 2) {
-      System.err.println("Usage: Driver <map name> <mode>");
+      System.err.println("Usage: Driver <map name|collection:n> <fp|bot|pdb> [moves|pushes|parallel|bidirectional|ida|external] [threads=N] [ttmb=MB] [sortmb=MB] [spill=dir] [bfs|astar|wastar|greedy] [weight] [matching|nearest] [time=ms] [nodes=N] [anytime] [nomacros] [offheap[=dir]] [portfolio[=log.csv]] [cache=dir]");
+      System.err.println("       Driver <map glob|collection:glob> bench [settings] [timeout=ms] [memory=MB] [out=results.csv|json] [baseline=old.csv]");
+      System.err.println("       Driver <map glob|collection:glob> batch [settings] [timeout=ms] [workers=N]");
+      System.err.println("       Driver <old.csv> compare <new.csv>");
       System.exit(1);
     }
 
+    // the benchmark modes take a glob or result files instead of a single map
+    if (args[1].equals("bench")) {
+      try {
+        System.exit(Benchmark.run(args[0], args, 2));
+      } catch (IllegalArgumentException ex) {
+        System.err.println("Invalid benchmark settings: " + ex.getMessage());
+        System.exit(1);
+      }
+    } else if (args[1].equals("batch")) {
+      try {
+        System.exit(Benchmark.batch(args[0], args, 2));
+      } catch (IllegalArgumentException ex) {
+        System.err.println("Invalid batch settings: " + ex.getMessage());
+        System.exit(1);
+      }
+    } else if (args[1].equals("compare") && args.length > 2) {
+      System.exit(Benchmark.compare(Path.of(args[0]), Path.of(args[2])));
+    }
+
     String mapName = args[0];
     String mode = args[1];
+    SolverConfig solverConfig = null;
+    try {
+      solverConfig = SolverConfig.fromArgs(args, 2);
+    } catch (IllegalArgumentException ex) {
+      System.err.println("Invalid solver settings: " + ex.getMessage());
+      System.exit(1);
+    }
 
     FileReader fileReader = new FileReader();
     MapData mapData = fileReader.readFile(mapName);
 
-    GameFrame gameFrame = new GameFrame(mapData);
+    if (mapData == null) {
+      System.exit(1);
+    }
+    String problem = mapData.validate();
+    if (problem != null && !mode.equals("fp")) {
+      System.err.println(mapName + ": " + problem);
+      System.exit(1);
+    }
+
+    Path patternFile = SolverConfig.patternDatabaseFor(mapName);
+    if (mode.equals("pdb")) {
+      buildPatternDatabase(mapData, patternFile);
+      return;
+    }
+    if (Files.exists(patternFile)) {
+      solverConfig.patternDatabase = patternFile;
+    }
+
+    GameFrame gameFrame = new GameFrame(mapData, solverConfig);
 
     if (mode.equals("fp")) {
       gameFrame.initiateFreePlay();
@@ -25,4 +76,15 @@ public class Driver {
       gameFrame.initiateSolution();
     }
   }
+
+  private static void buildPatternDatabase(MapData mapData, Path patternFile) {
+    long start = System.nanoTime();
+    try {
+      SokoBot.buildPatternDatabase(mapData.columns, mapData.rows, mapData.getMapLayer(), mapData.getItemsLayer(), patternFile);
+    } catch (Exception ex) {
+      System.err.println("Could not build pattern database: " + ex.getMessage());
+      System.exit(1);
+    }
+    System.out.printf("Wrote %s in %.2fs%n", patternFile, (System.nanoTime() - start) / 1e9);
+  }
 }
@@ -1,41 +1,40 @@
 package reader;
 
-import java.io.File;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class FileReader {
+  // a single level is looked for under these extensions in turn
+  private static final String[] EXTENSIONS = {".txt", ".xsb", ".sok"};
+  // separates a collection's name from the number of one of its levels, as in "microban:12"
+  private static final char LEVEL_SEPARATOR = ':';
+
+  /* Reads maps/<keyword>.txt, or with "name:n" the n-th level (from 1) of a collection such as maps/name.xsb */
   public MapData readFile(String keyword) {
-    int rows = 0;
-    int columns = 0;
-    char tiles[][] = new char[100][100];
-    for (int i = 0; i < 100; i++) {
-      for (int j = 0; j < 100; j++) {
-        tiles[i][j] = ' ';
-      }
+    String name = keyword;
+    int level = 1;
+    int separator = keyword.lastIndexOf(LEVEL_SEPARATOR);
+    if (separator >= 0) {
+      name = keyword.substring(0, separator);
+      level = Integer.parseInt(keyword.substring(separator + 1));
     }
 
-    try {
-      File file = new File("maps/" + keyword + ".txt");
-      Scanner scanner = new Scanner(file);
-      while (scanner.hasNext()) {
-        String nextLine = scanner.nextLine();
-        columns = Math.max(columns, nextLine.length());
-        for (int i = 0; i < nextLine.length(); i++) {
-          tiles[rows][i] = nextLine.charAt(i);
-        }
-        rows++;
-      }
-      scanner.close();
+    try (LevelCollection levels = new LevelCollection(find(name))) {
+      return levels.read(level - 1);
     } catch (Exception ex) {
       ex.printStackTrace(System.out);
       return null;
     }
+  }
 
-    MapData result = new MapData();
-    result.tiles = tiles;
-    result.rows = rows;
-    result.columns = columns;
-
-    return result;
+  /* The level file of a map or collection name in the maps directory */
+  public static Path find(String name) {
+    for (String extension : EXTENSIONS) {
+      Path file = Path.of("maps", name + extension);
+      if (Files.exists(file)) {
+        return file;
+      }
+    }
+    return Path.of("maps", name + EXTENSIONS[0]);
   }
 }
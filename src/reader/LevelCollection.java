@@ -0,0 +1,231 @@
+package reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ * A file of one or more levels in the XSB/SOK text format, mapped into memory and indexed lazily.
+ * A level is a run of lines that start with a level character and contain a wall; anything else,
+ * such as blank lines, "; comments" and "Title: ..." lines, separates levels. The index of level
+ * offsets only grows as far as the level asked for, so reading level n never parses the levels
+ * before it, and iterating streams the file one level at a time.
+ */
+public class LevelCollection implements Iterable<MapData>, Closeable {
+  // characters that may start a level row; '-' and '_' are floor, as some collections write it
+  private static final String LEVEL_CHARS = "#@+$*.-_ ";
+  private static final String TITLE = "Title:";
+
+  private final Path file;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int length;
+
+  // byte offsets of each indexed level's first row and of the end of its last row
+  private long[] starts = new long[16];
+  private long[] ends = new long[16];
+  private final List<String> titles = new ArrayList<>();
+  private int count;
+  private int scanned;
+  private boolean complete;
+  // the last comment or title line seen outside a level, which names the level that follows it
+  private String pendingTitle;
+
+  public LevelCollection(Path file) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      channel.close();
+      throw new IOException("Level file is too large: " + file);
+    }
+    this.length = (int) size;
+    this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+  }
+
+  /* Number of levels in the file; indexes the whole file, without parsing any level */
+  public int size() {
+    indexUpTo(Integer.MAX_VALUE);
+    return count;
+  }
+
+  /* Reads the level with the given index, counting from 0 */
+  public MapData read(int index) {
+    if (index < 0 || !indexUpTo(index + 1)) {
+      throw new IndexOutOfBoundsException("Level " + (index + 1) + " not found in " + file);
+    }
+    return parse((int) starts[index], (int) ends[index], index);
+  }
+
+  /* The title given to a level by a comment or "Title:" line before it, or its number */
+  public String title(int index) {
+    if (index < 0 || !indexUpTo(index + 1)) {
+      throw new IndexOutOfBoundsException("Level " + (index + 1) + " not found in " + file);
+    }
+    String title = titles.get(index);
+    return title != null ? title : String.valueOf(index + 1);
+  }
+
+  @Override
+  public Iterator<MapData> iterator() {
+    return new Iterator<>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return indexUpTo(next + 1);
+      }
+
+      @Override
+      public MapData next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return read(next++);
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // scans forward line by line until at least wanted levels are indexed; returns whether there are that many
+  private boolean indexUpTo(int wanted) {
+    int levelStart = -1, levelEnd = -1;
+
+    while (count < wanted && !complete) {
+      int lineStart = scanned;
+      int lineEnd = lineStart;
+      while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      scanned = Math.min(lineEnd + 1, length);
+      boolean atEnd = scanned >= length;
+
+      if (isLevelRow(lineStart, lineEnd)) {
+        if (levelStart < 0) {
+          levelStart = lineStart;
+        }
+        levelEnd = lineEnd;
+      } else {
+        if (levelStart >= 0) {
+          addLevel(levelStart, levelEnd);
+          levelStart = -1;
+        }
+        String text = text(lineStart, lineEnd);
+        if (text.startsWith(";")) {
+          pendingTitle = text.substring(1).trim();
+        } else if (text.regionMatches(true, 0, TITLE, 0, TITLE.length())) {
+          pendingTitle = text.substring(TITLE.length()).trim();
+        }
+      }
+
+      if (atEnd) {
+        if (levelStart >= 0) {
+          addLevel(levelStart, levelEnd);
+        }
+        complete = true;
+      }
+    }
+    return count >= wanted;
+  }
+
+  private void addLevel(int start, int end) {
+    if (count == starts.length) {
+      starts = Arrays.copyOf(starts, count * 2);
+      ends = Arrays.copyOf(ends, count * 2);
+    }
+    starts[count] = start;
+    ends[count] = end;
+    titles.add(pendingTitle);
+    pendingTitle = null;
+    count++;
+  }
+
+  // a level row starts, after any indentation, with a level character and has a wall somewhere
+  private boolean isLevelRow(int start, int end) {
+    int i = start;
+    while (i < end && buffer.get(i) == ' ') {
+      i++;
+    }
+    if (i == end || LEVEL_CHARS.indexOf(buffer.get(i)) < 0) {
+      return false;
+    }
+    for (; i < end; i++) {
+      if (buffer.get(i) == '#') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String text(int start, int end) {
+    byte[] bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.ISO_8859_1).trim();
+  }
+
+  // sizes the grid to the level's rows and widest row, then fills it in a second pass
+  private MapData parse(int start, int end, int index) {
+    int rows = 0, columns = 0, width = 0;
+    for (int i = start; i <= end; i++) {
+      byte b = i < end ? buffer.get(i) : (byte) '\n';
+      if (b == '\n') {
+        rows++;
+        columns = Math.max(columns, width);
+        width = 0;
+      } else if (b != '\r') {
+        width++;
+      }
+    }
+
+    char[][] tiles = new char[rows][columns];
+    int r = 0, c = 0;
+    for (int i = start; i <= end; i++) {
+      byte b = i < end ? buffer.get(i) : (byte) '\n';
+      if (b == '\n') {
+        Arrays.fill(tiles[r], c, columns, ' ');
+        r++;
+        c = 0;
+      } else if (b != '\r') {
+        tiles[r][c++] = tile(b, r, index);
+      }
+    }
+
+    MapData result = new MapData();
+    result.tiles = tiles;
+    result.rows = rows;
+    result.columns = columns;
+    return result;
+  }
+
+  private char tile(byte b, int row, int index) {
+    switch (b) {
+      case '-':
+      case '_':
+        return ' ';
+      case ' ':
+      case '#':
+      case '@':
+      case '+':
+      case '$':
+      case '*':
+      case '.':
+        return (char) b;
+      default:
+        throw new IllegalArgumentException("Unknown tile '" + (char) b + "' in row " + (row + 1) + " of level " + (index + 1)
+            + " in " + file);
+    }
+  }
+}
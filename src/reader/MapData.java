@@ -5,6 +5,95 @@ public class MapData {
   public int rows;
   public int columns;
 
+  /* The walls, targets and floor without the player and boxes, as SokoBot expects them */
+  public char[][] getMapLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        switch (tiles[i][j]) {
+          case '#':
+            layer[i][j] = '#';
+            break;
+          case '.':
+          case '+':
+          case '*':
+            layer[i][j] = '.';
+            break;
+          default:
+            layer[i][j] = ' ';
+            break;
+        }
+      }
+    }
+    return layer;
+  }
+
+  /* The player and boxes without the level beneath them, as SokoBot expects them */
+  public char[][] getItemsLayer() {
+    char[][] layer = new char[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        switch (tiles[i][j]) {
+          case '@':
+          case '+':
+            layer[i][j] = '@';
+            break;
+          case '$':
+          case '*':
+            layer[i][j] = '$';
+            break;
+          default:
+            layer[i][j] = ' ';
+            break;
+        }
+      }
+    }
+    return layer;
+  }
+
+  /* Returns what keeps the level from being solved, or null if it looks playable */
+  public String validate() {
+    if (rows == 0 || columns == 0) {
+      return "The level is empty";
+    }
+    int players = 0, boxes = 0, goals = 0;
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        switch (tiles[i][j]) {
+          case '@':
+            players++;
+            break;
+          case '+':
+            players++;
+            goals++;
+            break;
+          case '$':
+            boxes++;
+            break;
+          case '*':
+            boxes++;
+            goals++;
+            break;
+          case '.':
+            goals++;
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    if (players != 1) {
+      return "The level has " + players + " players instead of one";
+    }
+    if (boxes == 0) {
+      return "The level has no boxes";
+    }
+    if (boxes != goals) {
+      return "The level has " + boxes + " boxes but " + goals + " goals";
+    }
+    return null;
+  }
+
   public void print() {
     for (int i = 0; i < rows; i++) {
       for (int j = 0; j < columns; j++) {
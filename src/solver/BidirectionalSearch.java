@@ -0,0 +1,208 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Push-level search run from both ends: forward pushes from the initial position and reverse pulls from
+ * every goal position (the boxes on the targets with the player in any region next to them).
+ * Both sides record the states they expand in one shared table, tagged with the side that got there
+ * first, and the search stops as soon as one side expands a state the other side already holds.
+ * The two half paths are then stitched into a single move string. The first meeting is taken, so
+ * solutions are not guaranteed to use the fewest pushes.
+ */
+public class BidirectionalSearch {
+	private static final int FORWARD = 0, BACKWARD = 1;
+
+	private final Board board;
+	private final Zobrist zobrist;
+	private final SolverConfig config;
+	private final PushExpander forward;
+	private final Heuristic backwardHeuristic;
+	private final Reach reach;
+	// state -> index into nodes * 2 + the side that expanded it
+	private final StateStore meetings;
+	private final List<PushNode> nodes = new ArrayList<>();
+
+	private SearchBudget budget = new SearchBudget(0, 0);
+	private SearchMetrics.Probe probe;
+	private long expanded;
+	private long generated;
+
+	public BidirectionalSearch(MapAnalysis analysis, Zobrist zobrist, StateStore meetings, SolverConfig config,
+			Heuristic heuristic, DeadlockDetector deadlocks) {
+		this.board = analysis.getBoard();
+		this.zobrist = zobrist;
+		this.meetings = meetings;
+		this.config = config;
+		this.forward = new PushExpander(analysis, zobrist, heuristic, deadlocks, config.macros ? new Macros(analysis) : null);
+		this.reach = new Reach(board);
+		this.probe = new SearchMetrics().probe(deadlocks, meetings);
+
+		// pulling back towards the start is estimated with the push distances from the initial box cells
+		int[][] distance = new int[board.boxes.length][];
+		for (int i = 0; i < board.boxes.length; i++) {
+			distance[i] = analysis.pushDistancesFrom(board.boxes[i]);
+		}
+		this.backwardHeuristic = new LowerBound(distance, config.heuristic);
+	}
+
+	/* Searches from both ends and returns the stitched move string, or null */
+	public String solve() {
+		PushNode root = forward.root();
+		if (root == null) {
+			return null;
+		}
+
+		BucketQueue<PushNode> forwardOpen = new BucketQueue<>();
+		BucketQueue<PushNode> backwardOpen = new BucketQueue<>();
+		PushNode[] children = new PushNode[forward.maxChildren()];
+		enqueue(forwardOpen, root);
+		addGoals(backwardOpen);
+
+		while (!forwardOpen.isEmpty() || !backwardOpen.isEmpty()) {
+			int open = forwardOpen.size() + backwardOpen.size();
+			if (budget.exhausted()) {
+				probe.publish(open);
+				return null;
+			}
+			// the side with the smaller frontier moves next
+			boolean ahead = backwardOpen.isEmpty() || (!forwardOpen.isEmpty() && forwardOpen.size() <= backwardOpen.size());
+			int side = ahead ? FORWARD : BACKWARD;
+			PushNode n = ahead ? forwardOpen.poll() : backwardOpen.poll();
+
+			if (ahead && forward.isGoal(n)) {
+				probe.publish(open);
+				System.out.println("Number of Pushes: " + n.pushes);
+				return forward.getMoves(n);
+			}
+
+			int region = ahead ? forward.region(n) : reach.fill(n.player, n.boxes);
+			long hash = zobrist.withPlayer(n.boxHash, region);
+			int tag = meetings.get(region, n.boxes, hash);
+			if (tag >= 0) {
+				if ((tag & 1) == side) {
+					continue;
+				}
+				PushNode other = nodes.get(tag >>> 1);
+				probe.publish(open);
+				return ahead ? stitch(n, other) : stitch(other, n);
+			}
+			meetings.put(region, n.boxes, hash, nodes.size() * 2 + side);
+			nodes.add(n);
+			expanded++;
+			probe.expanded(n.pushes, n.hcost, open);
+
+			if (ahead) {
+				int count = forward.expand(n, children);
+				for (int i = 0; i < count; i++) {
+					enqueue(forwardOpen, children[i]);
+				}
+			} else {
+				pull(n, backwardOpen);
+			}
+		}
+
+		probe.publish(0);
+		return null;
+	}
+
+	// one goal node per player region that touches a box, with the boxes on the targets
+	private void addGoals(BucketQueue<PushNode> open) {
+		long targetHash = zobrist.hashBoxes(board.targets);
+		boolean[] covered = new boolean[board.size];
+
+		for (int cell = 0; cell < board.size; cell++) {
+			if (board.wall[cell] || board.target[cell] || covered[cell]) {
+				continue;
+			}
+			reach.fill(cell, board.targets);
+
+			boolean touchesBox = false;
+			for (int c = 0; c < board.size; c++) {
+				if (reach.reached(c)) {
+					covered[c] = true;
+					for (int dir = 0; dir < 4 && !touchesBox; dir++) {
+						int n = board.next(c, dir);
+						touchesBox = n >= 0 && reach.occupied(n);
+					}
+				}
+			}
+
+			int hcost = backwardHeuristic.estimate(cell, board.targets);
+			if (touchesBox && hcost != Heuristic.UNSOLVABLE) {
+				enqueue(open, new PushNode(cell, board.targets, targetHash, 0, -1, -1, null, hcost));
+			}
+		}
+	}
+
+	/*
+	 * Generates every pull from the node, whose region must be filled in reach. The player stands next to a box
+	 * and steps back away from it, dragging the box onto the cell it left. A pulled node keeps the box's cell
+	 * before the pull in boxFrom, the pull direction in dir and the player's cell after the pull in player.
+	 */
+	private void pull(PushNode n, BucketQueue<PushNode> open) {
+		for (int i = 0; i < n.boxes.length; i++) {
+			int box = n.boxes[i];
+			for (int dir = 0; dir < 4; dir++) {
+				int stand = board.next(box, dir);
+				if (stand < 0 || !reach.reached(stand)) {
+					continue;
+				}
+				int back = board.next(stand, dir);
+				if (back < 0 || !reach.reached(back)) {
+					continue;
+				}
+
+				int[] boxes = Board.moveBox(n.boxes, i, stand);
+				int hcost = backwardHeuristic.estimate(back, boxes);
+				if (hcost == Heuristic.UNSOLVABLE) {
+					continue;
+				}
+				enqueue(open, new PushNode(back, boxes, zobrist.moveBox(n.boxHash, box, stand), n.pushes + 1, box, dir, n, hcost));
+			}
+		}
+	}
+
+	// plays the forward half, then replays the backward half's pulls as pushes in reverse
+	private String stitch(PushNode ahead, PushNode behind) {
+		System.out.println("Number of Pushes: " + (ahead.pushes + behind.pushes));
+		StringBuilder moves = new StringBuilder(forward.getMoves(ahead));
+		int player = ahead.player;
+
+		for (PushNode n = behind; n.parent != null; n = n.parent) {
+			reach.fill(player, n.boxes);
+			reach.appendPath(n.player, moves);
+			moves.append(Board.MOVES[Board.opposite(n.dir)]);
+			// undoing the pull puts the box back on boxFrom and leaves the player where the box was
+			player = board.next(n.boxFrom, n.dir);
+		}
+
+		return moves.toString();
+	}
+
+	private void enqueue(BucketQueue<PushNode> open, PushNode n) {
+		generated++;
+		probe.generated(1);
+		open.add(n, config.strategy.priority(n.pushes, n.hcost, config.weight));
+	}
+
+	/* Stops the search once the budget runs out or is cancelled; solve then returns null */
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/* Reports progress into the given metrics */
+	public void setMetrics(SearchMetrics metrics) {
+		this.probe = metrics.probe(forward.getDeadlocks(), meetings);
+	}
+
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/* Nodes put on either open list, including the root and the goal nodes */
+	public long getGenerated() {
+		return generated;
+	}
+}
@@ -0,0 +1,194 @@
+package solver;
+
+import java.util.Arrays;
+
+/* A level flattened so that every tile is addressed by a single cell index (row * cols + column) */
+public class Board {
+	public static final char EMPTY = ' ', TARGET = '.', WALL = '#';
+	public static final char PLAYER = '@', BOX = '$';
+	public static final int RIGHT = 0, LEFT = 1, UP = 2, DOWN = 3;
+	// move letters indexed by direction, as played back by the GUI
+	static final char[] MOVES = {'r', 'l', 'u', 'd'};
+
+	// cells are packed into 16 bits each when states are stored
+	static final int MAX_CELLS = 1 << 16;
+
+	final int rows, cols, size;
+	final boolean[] wall;
+	final boolean[] target;
+	final int[] targets;
+	// neighbour of each cell in each direction (cell * 4 + direction), or -1 past the edge or into a wall
+	final int[] next;
+
+	// initial state: the player's cell and the box cells in ascending order
+	final int player;
+	final int[] boxes;
+
+	public Board(int width, int height, char[][] mapData, char[][] itemsData) {
+		if (width * height > MAX_CELLS) {
+			throw new IllegalArgumentException("Level is too large: " + width + "x" + height);
+		}
+
+		this.rows = height;
+		this.cols = width;
+		this.size = width * height;
+		this.wall = new boolean[size];
+		this.target = new boolean[size];
+
+		int[] targetCells = new int[size];
+		int[] boxCells = new int[size];
+		int targetCount = 0, boxCount = 0, playerCell = -1;
+
+		// cells are visited in ascending order, so both lists come out sorted
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				int cell = cell(r, c);
+				char tile = c < mapData[r].length ? mapData[r][c] : EMPTY;
+				char item = c < itemsData[r].length ? itemsData[r][c] : EMPTY;
+
+				wall[cell] = tile == WALL;
+				if (tile == TARGET) {
+					target[cell] = true;
+					targetCells[targetCount++] = cell;
+				}
+				if (item == BOX) {
+					boxCells[boxCount++] = cell;
+				} else if (item == PLAYER) {
+					playerCell = cell;
+				}
+			}
+		}
+
+		this.targets = Arrays.copyOf(targetCells, targetCount);
+		this.boxes = Arrays.copyOf(boxCells, boxCount);
+		this.player = playerCell;
+		this.next = new int[size * 4];
+
+		for (int cell = 0; cell < size; cell++) {
+			int r = row(cell), c = col(cell);
+			next[cell * 4 + RIGHT] = c + 1 < cols ? cell + 1 : -1;
+			next[cell * 4 + LEFT] = c > 0 ? cell - 1 : -1;
+			next[cell * 4 + UP] = r > 0 ? cell - cols : -1;
+			next[cell * 4 + DOWN] = r + 1 < rows ? cell + cols : -1;
+		}
+		if (playerCell >= 0) {
+			wallOffUnreachable(playerCell);
+		}
+		for (int i = 0; i < next.length; i++) {
+			if (next[i] >= 0 && wall[next[i]]) {
+				next[i] = -1;
+			}
+		}
+	}
+
+	// floor the player can never walk to, such as the outside of the level, is made wall so that no search ever steps onto it
+	private void wallOffUnreachable(int start) {
+		boolean[] reached = new boolean[size];
+		int[] queue = new int[size];
+		int head = 0, tail = 0;
+		reached[start] = true;
+		queue[tail++] = start;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int n = next[cell * 4 + dir];
+				if (n >= 0 && !wall[n] && !reached[n]) {
+					reached[n] = true;
+					queue[tail++] = n;
+				}
+			}
+		}
+
+		// boxes and targets are left where they are, so the level keeps its counts
+		for (int cell : boxes) {
+			reached[cell] = true;
+		}
+		for (int cell : targets) {
+			reached[cell] = true;
+		}
+		for (int cell = 0; cell < size; cell++) {
+			wall[cell] |= !reached[cell];
+		}
+	}
+
+	/* The open cell next to the given one, or -1 */
+	int next(int cell, int dir) {
+		return next[cell * 4 + dir];
+	}
+
+	static int opposite(int dir) {
+		return dir ^ 1;
+	}
+
+	/* Moves the box at index i to a new cell, keeping the box cells in ascending order */
+	static int[] moveBox(int[] boxes, int i, int to) {
+		return moveBox(boxes, i, to, new int[boxes.length]);
+	}
+
+	/* Like moveBox, but writes the moved box cells into the given array and returns it */
+	static int[] moveBox(int[] boxes, int i, int to, int[] moved) {
+		System.arraycopy(boxes, 0, moved, 0, boxes.length);
+
+		while (i > 0 && moved[i - 1] > to) {
+			moved[i] = moved[i - 1];
+			i--;
+		}
+		while (i < moved.length - 1 && moved[i + 1] < to) {
+			moved[i] = moved[i + 1];
+			i++;
+		}
+		moved[i] = to;
+
+		return moved;
+	}
+
+	/* A bitset of cells with one bit per cell, for marking the boxes of a state */
+	long[] newCellSet() {
+		return new long[(size + 63) >>> 6];
+	}
+
+	static void addCells(long[] set, int[] cells) {
+		for (int cell : cells) {
+			set[cell >>> 6] |= 1L << cell;
+		}
+	}
+
+	static void removeCells(long[] set, int[] cells) {
+		for (int cell : cells) {
+			set[cell >>> 6] &= ~(1L << cell);
+		}
+	}
+
+	static boolean contains(long[] set, int cell) {
+		return (set[cell >>> 6] & 1L << cell) != 0;
+	}
+
+	int cell(int r, int c) {
+		return r * cols + c;
+	}
+
+	int row(int cell) {
+		return cell / cols;
+	}
+
+	int col(int cell) {
+		return cell % cols;
+	}
+
+	/* A level can only be solved when it has a player and as many boxes as targets */
+	public boolean isValid() {
+		return player >= 0 && boxes.length > 0 && boxes.length == targets.length;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	public int getBoxCount() {
+		return boxes.length;
+	}
+}
@@ -0,0 +1,83 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Priority queue for small non-negative integer priorities, such as step or push counts.
+ * Each priority has its own bucket, so adding and polling are O(1) apart from skipping
+ * empty buckets, and priorities are never boxed.
+ * Within a bucket the most recently added element comes out first, which favours deeper
+ * states when A* priorities tie.
+ */
+public class BucketQueue<T> {
+	private static final int INITIAL_BUCKETS = 64;
+	private static final int INITIAL_BUCKET_SIZE = 16;
+
+	private Object[][] buckets = new Object[INITIAL_BUCKETS][];
+	private int[] counts = new int[INITIAL_BUCKETS];
+	private int min = Integer.MAX_VALUE;
+	private int size;
+
+	public void add(T element, int priority) {
+		if (priority < 0) {
+			throw new IllegalArgumentException("Negative priority: " + priority);
+		}
+		if (priority >= buckets.length) {
+			int length = Math.max(buckets.length * 2, priority + 1);
+			buckets = Arrays.copyOf(buckets, length);
+			counts = Arrays.copyOf(counts, length);
+		}
+
+		Object[] bucket = buckets[priority];
+		if (bucket == null) {
+			bucket = buckets[priority] = new Object[INITIAL_BUCKET_SIZE];
+		} else if (counts[priority] == bucket.length) {
+			bucket = buckets[priority] = Arrays.copyOf(bucket, bucket.length * 2);
+		}
+
+		bucket[counts[priority]++] = element;
+		min = Math.min(min, priority);
+		size++;
+	}
+
+	/* Removes and returns an element with the lowest priority, or null when empty */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		if (size == 0) {
+			return null;
+		}
+		while (counts[min] == 0) {
+			min++;
+		}
+
+		Object[] bucket = buckets[min];
+		int last = --counts[min];
+		T element = (T) bucket[last];
+		bucket[last] = null;
+		size--;
+
+		if (size == 0) {
+			min = Integer.MAX_VALUE;
+		}
+		return element;
+	}
+
+	/* The lowest priority currently queued, or Integer.MAX_VALUE when empty */
+	public int peekPriority() {
+		if (size == 0) {
+			return Integer.MAX_VALUE;
+		}
+		while (counts[min] == 0) {
+			min++;
+		}
+		return min;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
@@ -0,0 +1,292 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Player-inaccessible corrals: areas the player cannot walk into, fenced by boxes. A corral is a PI-corral
+ * when every push the player can make of its barrier boxes (the ones next to the player's region) goes
+ * into it, and the player can make every push into it from where it stands. The boxes in an unsolved
+ * PI-corral have to be pushed into it sooner or later, and pushes elsewhere can neither help nor hinder
+ * that, so only the barrier boxes of the smallest unsolved PI-corral need to be pushed.
+ *
+ * Before that, the corral gets a small search of its own: every other box is taken off the board, and it
+ * looks for a way to put all of the corral's boxes on targets or push one of them out to where the player
+ * could walk. Fewer boxes never stop a push, so a corral that finds neither can never be opened and the
+ * state is dead. The verdicts are cached by the corral's boxes and the player's region around them.
+ */
+class Corrals {
+	static final int NONE = 0, RESTRICT = 1, DEADLOCK = 2;
+	// states one corral search may take before it gives up and calls the corral alive
+	private static final int MAX_SEARCH = 512;
+	// slots of the verdict cache; it is emptied at half full, so it never has to grow
+	private static final int VERDICT_CAPACITY = 1 << 16;
+	// slots of a corral search's visited table, enough for every state the search may take without growing
+	private static final int SEARCH_CAPACITY = 2 * MAX_SEARCH;
+	// fills the unused box slots of a verdict key; no board has this many cells
+	private static final int NO_BOX = 0xFFFF;
+	private static final int DEAD = 1, ALIVE = 0;
+
+	private final Board board;
+	private final MapAnalysis analysis;
+	// the corral each cell was put in by the current call, as an id unique across calls
+	private final int[] corral;
+	private final int[] queue;
+	private int lastId;
+	private int chosen;
+
+	// the corral search: a board without the other boxes, its visited states and the cells the player could first reach
+	private final Reach reach;
+	private final int[] start;
+	private int startStamp;
+	private final StateTable verdicts;
+	private final int[] key;
+	// a buffer for the boxes of a corral of each size
+	private final int[][] corralBoxes;
+
+	// the corral search's queue, one row of box cells per state, and its visited states; reused from search to search
+	private final StateTable seen;
+	private final int[] states;
+	private final int[] players;
+	private final int[] seenKey;
+	// the state being expanded and the one a push leads to, for corrals of each size
+	private final int[][] current, moved;
+
+	Corrals(MapAnalysis analysis) {
+		this.board = analysis.getBoard();
+		this.analysis = analysis;
+		this.corral = new int[board.size];
+		this.queue = new int[board.size];
+		this.reach = new Reach(board);
+		this.start = new int[board.size];
+		int boxCount = board.getBoxCount();
+		this.verdicts = new StateTable(boxCount, VERDICT_CAPACITY);
+		this.key = new int[boxCount];
+		this.corralBoxes = new int[boxCount + 1][];
+		this.current = new int[boxCount + 1][];
+		this.moved = new int[boxCount + 1][];
+		for (int count = 0; count <= boxCount; count++) {
+			corralBoxes[count] = new int[count];
+			current[count] = new int[count];
+			moved[count] = new int[count];
+		}
+		this.seen = new StateTable(boxCount, SEARCH_CAPACITY);
+		this.states = new int[MAX_SEARCH * boxCount];
+		this.players = new int[MAX_SEARCH];
+		this.seenKey = new int[boxCount];
+	}
+
+	/*
+	 * Looks for the unsolved PI-corral with the fewest barrier boxes around the boxes, whose player region
+	 * the fill has just filled. Returns NONE when there is none, DEADLOCK when the corral can never be
+	 * opened, and otherwise RESTRICT, after which isBarrier tells which boxes to push.
+	 */
+	int find(int[] boxes, Reach fill) {
+		if (lastId > Integer.MAX_VALUE - board.size) {
+			Arrays.fill(corral, 0);
+			lastId = 0;
+		}
+		int firstId = lastId;
+		int best = -1, bestBarrier = Integer.MAX_VALUE;
+		for (int box : boxes) {
+			for (int dir = 0; dir < 4; dir++) {
+				int seed = board.next[box * 4 + dir];
+				if (seed < 0 || fill.reached(seed) || fill.occupied(seed) || corral[seed] > firstId) {
+					continue;
+				}
+				int id = ++lastId;
+				int size = flood(seed, id, fill);
+				int barrier = barrierIfUnsolvedPi(id, size, fill);
+				if (barrier > 0 && barrier < bestBarrier) {
+					best = id;
+					bestBarrier = barrier;
+				}
+			}
+		}
+		if (best < 0) {
+			return NONE;
+		}
+
+		chosen = best;
+		// the last flood may have been another corral's, so the chosen one is gathered again
+		int count = 0;
+		for (int box : boxes) {
+			if (corral[box] == best) {
+				key[count++] = box;
+			}
+		}
+		return deadlocked(fill.origin(), count) ? DEADLOCK : RESTRICT;
+	}
+
+	/* Whether the box is a barrier box of the corral the last find chose */
+	boolean isBarrier(int box, Reach fill) {
+		if (corral[box] != chosen) {
+			return false;
+		}
+		for (int dir = 0; dir < 4; dir++) {
+			int n = board.next[box * 4 + dir];
+			if (n >= 0 && fill.reached(n)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// floods the cells the player cannot reach, boxes included, into queue; returns how many there are
+	private int flood(int seed, int id, Reach fill) {
+		int head = 0, tail = 0;
+		corral[seed] = id;
+		queue[tail++] = seed;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int n = board.next[cell * 4 + dir];
+				if (n >= 0 && !fill.reached(n) && corral[n] != id) {
+					corral[n] = id;
+					queue[tail++] = n;
+				}
+			}
+		}
+		return tail;
+	}
+
+	// the number of barrier boxes of the corral in queue if it is an unsolved PI-corral, or 0
+	private int barrierIfUnsolvedPi(int id, int size, Reach fill) {
+		boolean solved = true;
+		int barrier = 0;
+		for (int i = 0; i < size; i++) {
+			int cell = queue[i];
+			if (!fill.occupied(cell)) {
+				solved &= !board.target[cell];
+				continue;
+			}
+			solved &= board.target[cell];
+
+			boolean pushable = false;
+			for (int dir = 0; dir < 4; dir++) {
+				int behind = board.next[cell * 4 + Board.opposite(dir)];
+				int to = board.next[cell * 4 + dir];
+				if (behind >= 0 && fill.reached(behind)) {
+					pushable = true;
+				}
+				if (to < 0 || fill.occupied(to) || analysis.isDead(to)) {
+					continue;
+				}
+				if (corral[to] != id) {
+					// a push out of the corral the player can make now
+					if (behind >= 0 && fill.reached(behind)) {
+						return 0;
+					}
+				} else if (behind >= 0 && !fill.reached(behind)) {
+					// a push into the corral the player cannot make yet
+					return 0;
+				}
+			}
+			if (pushable) {
+				barrier++;
+			}
+		}
+		return solved ? 0 : barrier;
+	}
+
+	/*
+	 * Searches the corral's boxes on their own, breadth first, for a way to put them all on targets or one of
+	 * them where the player could first walk; true when there is none within the search's limit.
+	 */
+	private boolean deadlocked(int player, int count) {
+		int[] boxes = corralBoxes[count];
+		System.arraycopy(key, 0, boxes, 0, count);
+		int region = reach.fill(player, boxes);
+		long hash = verdictHash(region, boxes);
+		padKey(boxes, key);
+		int verdict = verdicts.get(region, key, hash);
+		if (verdict >= 0) {
+			return verdict == DEAD;
+		}
+
+		if (++startStamp == Integer.MAX_VALUE) {
+			Arrays.fill(start, 0);
+			startStamp = 1;
+		}
+		for (int cell = 0; cell < board.size; cell++) {
+			if (reach.reached(cell)) {
+				start[cell] = startStamp;
+			}
+		}
+
+		boolean dead = search(player, boxes);
+		if (verdicts.size() >= VERDICT_CAPACITY / 2) {
+			verdicts.clear();
+		}
+		padKey(boxes, key);
+		verdicts.put(region, key, hash, dead ? DEAD : ALIVE);
+		return dead;
+	}
+
+	private boolean search(int player, int[] first) {
+		int count = first.length;
+		int[] boxes = current[count], next = moved[count];
+		seen.clear();
+		int head = 0, tail = 0;
+		System.arraycopy(first, 0, states, 0, count);
+		players[tail++] = player;
+
+		while (head < tail) {
+			System.arraycopy(states, head * count, boxes, 0, count);
+			int region = reach.fill(players[head++], boxes);
+			long hash = verdictHash(region, boxes);
+			padKey(boxes, seenKey);
+			if (seen.get(region, seenKey, hash) >= 0) {
+				continue;
+			}
+			seen.put(region, seenKey, hash, 0);
+
+			for (int i = 0; i < boxes.length; i++) {
+				int box = boxes[i];
+				for (int dir = 0; dir < 4; dir++) {
+					int behind = board.next[box * 4 + Board.opposite(dir)];
+					int to = board.next[box * 4 + dir];
+					if (behind < 0 || to < 0 || !reach.reached(behind) || reach.occupied(to) || analysis.isDead(to)) {
+						continue;
+					}
+					if (start[to] == startStamp) {
+						return false;
+					}
+					Board.moveBox(boxes, i, to, next);
+					if (onTargets(next)) {
+						return false;
+					}
+					if (tail == MAX_SEARCH) {
+						// out of room: the corral may well open, so it is not called dead
+						return false;
+					}
+					System.arraycopy(next, 0, states, tail * count, count);
+					players[tail++] = box;
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean onTargets(int[] boxes) {
+		for (int box : boxes) {
+			if (!board.target[box]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the corral's boxes followed by empty slots, so that corrals of any size share one table
+	private static void padKey(int[] boxes, int[] padded) {
+		System.arraycopy(boxes, 0, padded, 0, boxes.length);
+		Arrays.fill(padded, boxes.length, padded.length, NO_BOX);
+	}
+
+	private static long verdictHash(int region, int[] boxes) {
+		long hash = region;
+		for (int box : boxes) {
+			hash = hash * 31 + box;
+		}
+		return hash * 0x9E3779B97F4A7C15L;
+	}
+}
@@ -0,0 +1,145 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/*
+ * Checks whether a push has left the level unsolvable, looking only at the neighbourhood of the moved box.
+ * Keeps a count of the states each rule pruned so rules can be compared on real levels.
+ */
+public class DeadlockDetector {
+	private static final PruneRule[] RULES = PruneRule.values();
+
+	private final Board board;
+	private final MapAnalysis analysis;
+	private final EnumSet<PruneRule> enabled;
+	private final long[] pruned = new long[RULES.length];
+
+	private final int[] boxMark;
+	private final int[] visiting;
+	private int stamp;
+	private boolean offTarget;
+
+	public DeadlockDetector(MapAnalysis analysis, EnumSet<PruneRule> enabled) {
+		this.board = analysis.getBoard();
+		this.analysis = analysis;
+		this.enabled = enabled;
+		this.boxMark = new int[board.size];
+		this.visiting = new int[board.size];
+	}
+
+	/* Returns the rule that prunes the state reached by pushing a box onto the moved cell, or null if none applies */
+	public PruneRule check(int[] boxes, int moved) {
+		if (enabled.contains(PruneRule.DEAD_SQUARE) && analysis.isDead(moved)) {
+			return prune(PruneRule.DEAD_SQUARE);
+		}
+		if (!enabled.contains(PruneRule.BLOCK_2X2) && !enabled.contains(PruneRule.FREEZE)) {
+			return null;
+		}
+
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(boxMark, 0);
+			Arrays.fill(visiting, 0);
+			stamp = 1;
+		}
+		for (int box : boxes) {
+			boxMark[box] = stamp;
+		}
+
+		if (enabled.contains(PruneRule.BLOCK_2X2) && completesBlock(moved)) {
+			return prune(PruneRule.BLOCK_2X2);
+		}
+		if (enabled.contains(PruneRule.FREEZE)) {
+			offTarget = false;
+			if (frozen(moved) && offTarget) {
+				return prune(PruneRule.FREEZE);
+			}
+		}
+		return null;
+	}
+
+	/* Whether the rule is one of the detector's, including the rules it leaves to the searches */
+	public boolean isEnabled(PruneRule rule) {
+		return enabled.contains(rule);
+	}
+
+	/* Counts a state pruned by a rule checked outside the detector */
+	PruneRule prune(PruneRule rule) {
+		pruned[rule.ordinal()]++;
+		return rule;
+	}
+
+	// checks the four 2x2 squares that contain the moved box
+	private boolean completesBlock(int moved) {
+		int r = board.row(moved), c = board.col(moved);
+
+		for (int dr = -1; dr <= 0; dr++) {
+			for (int dc = -1; dc <= 0; dc++) {
+				boolean full = true, boxOffTarget = false;
+				for (int i = 0; i < 4 && full; i++) {
+					int row = r + dr + (i >> 1), col = c + dc + (i & 1);
+					if (row < 0 || row >= board.rows || col < 0 || col >= board.cols) {
+						continue;
+					}
+					int cell = board.cell(row, col);
+					if (boxMark[cell] == stamp) {
+						boxOffTarget |= !board.target[cell];
+					} else if (!board.wall[cell]) {
+						full = false;
+					}
+				}
+				if (full && boxOffTarget) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// a box is frozen when it is blocked on both axes; boxes already under inspection count as walls
+	private boolean frozen(int cell) {
+		visiting[cell] = stamp;
+		boolean frozen = blocked(cell, Board.LEFT, Board.RIGHT) && blocked(cell, Board.UP, Board.DOWN);
+		if (!frozen) {
+			// a box that can still move is not an obstacle for the rest of the check
+			visiting[cell] = 0;
+		} else if (!board.target[cell]) {
+			offTarget = true;
+		}
+		return frozen;
+	}
+
+	private boolean blocked(int cell, int dirA, int dirB) {
+		int a = board.next(cell, dirA), b = board.next(cell, dirB);
+
+		if (a < 0 || b < 0 || visiting[a] == stamp || visiting[b] == stamp) {
+			return true;
+		}
+		// with dead squares on both sides the box may move, but only onto a dead square
+		if (analysis.isDead(a) && analysis.isDead(b)) {
+			return true;
+		}
+		return (boxMark[a] == stamp && frozen(a)) || (boxMark[b] == stamp && frozen(b));
+	}
+
+	/* Adds the prune counts of another detector, such as one used by a search worker */
+	public synchronized void merge(DeadlockDetector other) {
+		for (int i = 0; i < pruned.length; i++) {
+			pruned[i] += other.pruned[i];
+		}
+	}
+
+	/* Number of states discarded by the given rule so far */
+	public long getPruned(PruneRule rule) {
+		return pruned[rule.ordinal()];
+	}
+
+	/* Prints how many states each enabled rule pruned */
+	public void printPruneCounts() {
+		for (PruneRule rule : RULES) {
+			if (enabled.contains(rule) || pruned[rule.ordinal()] > 0) {
+				System.out.println("Pruned by " + rule + ": " + pruned[rule.ordinal()]);
+			}
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Push-level search that keeps its states on disk instead of in a table, for levels whose visited states
+ * do not fit in memory. It is a breadth-first iterative deepening A*: every pass searches the states in
+ * layers of equal pushes, drops children whose pushes plus estimate exceed the pass's bound, and raises
+ * the bound to the smallest value that went over it, as IterativeDeepeningSearch does.
+ *
+ * The children of a layer are appended unsorted to a file for the layer their pushes put them in, and
+ * duplicates are only removed when that layer's turn comes: its file is sorted externally (see
+ * RecordSorter), equal states are collapsed, and the sorted states are merged against a sorted file of every
+ * state seen in the pass so far, dropping the ones seen before. Every file is read and written in order,
+ * so the disk is never asked for a random read while searching. A state on disk records the layer and
+ * position of the state it came from, and the solution is read back along those links.
+ *
+ * With an estimate that never overshoots, the first solution found uses the fewest pushes.
+ */
+public class ExternalSearch {
+	// byte offsets past a record's key: where the push left the player, the push as boxFrom * 4 + dir (-1 for the
+	// initial state), the estimate, and the layer and position of the parent record (-1 for the initial state)
+	private static final int PLAYER = 0, MOVE = 4, HCOST = 8, PARENT_LAYER = 12, PARENT_INDEX = 16, PAYLOAD = 24;
+
+	private final PushExpander expander;
+	private final Zobrist zobrist;
+	private final SolverConfig config;
+	private final int boxCount;
+	// a record's key is the state's hash followed by the state packed as in StateTable, with the player's region
+	private final int keyLongs;
+	private final int keyBytes;
+	private final int recordBytes;
+
+	private final long[] keyWords;
+	private final ByteBuffer record;
+	private final int[] boxes;
+	private final Successors children;
+
+	private Path directory;
+	private RecordSorter sorter;
+	// the sorted, duplicate-free file of each layer of the pass, null for layers that held no state
+	private final List<Path> layers = new ArrayList<>();
+	// the unsorted children of the layers still to come, by pushes
+	private final TreeMap<Integer, RecordSorter.Writer> open = new TreeMap<>();
+	private final Map<Integer, Path> openFiles = new HashMap<>();
+	// the sorted keys of every state in the pass's layers so far
+	private Path visited;
+
+	private SearchBudget budget = new SearchBudget(0, 0);
+	private SearchMetrics.Probe probe;
+	private int bound;
+	private int nextBound;
+	private int pass;
+	private int solutionPushes = -1;
+	private long expanded;
+	private long generated;
+	private long openRecords;
+	private long layerBytes;
+	private long storedStates;
+	private long peakStates;
+	private long peakBytes;
+
+	public ExternalSearch(MapAnalysis analysis, Zobrist zobrist, SolverConfig config, Heuristic heuristic, DeadlockDetector deadlocks) {
+		this.zobrist = zobrist;
+		this.config = config;
+		this.expander = new PushExpander(analysis, zobrist, heuristic, deadlocks, config.macros ? new Macros(analysis) : null);
+		this.probe = new SearchMetrics().probe(deadlocks, null);
+		this.boxCount = analysis.getBoard().getBoxCount();
+
+		int words = StateTable.wordsFor(boxCount);
+		this.keyLongs = 1 + words;
+		this.keyBytes = keyLongs * Long.BYTES;
+		this.recordBytes = keyBytes + PAYLOAD;
+		this.keyWords = new long[words];
+		this.record = ByteBuffer.allocate(recordBytes);
+		this.boxes = new int[boxCount];
+		this.children = expander.newSuccessors();
+	}
+
+	/* Deepens until a pass finds a solution, no child went over the bound, or the budget runs out */
+	public String solve() {
+		PushNode root = expander.root();
+		if (root == null) {
+			return null;
+		}
+
+		try {
+			directory = config.spillDirectory != null ? Files.createTempDirectory(Files.createDirectories(config.spillDirectory), "search-")
+					: Files.createTempDirectory("search-");
+			sorter = new RecordSorter(recordBytes, keyLongs, directory, config.sortMegabytes << 20);
+			bound = root.hcost;
+			while (true) {
+				pass++;
+				nextBound = Integer.MAX_VALUE;
+				System.out.println("External pass " + pass + ": pushes + estimate up to " + bound);
+				String solution = search(root);
+				clear();
+				if (solution != null) {
+					System.out.println("Number of Pushes: " + solutionPushes);
+					probe.publish(0);
+					return solution;
+				}
+				if (budget.isExhausted() || nextBound == Integer.MAX_VALUE) {
+					probe.publish(0);
+					return null;
+				}
+				bound = nextBound;
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			deleteDirectory();
+		}
+	}
+
+	// one pass: closes the layers in order of pushes and expands each; returns the solution or null
+	private String search(PushNode root) throws IOException {
+		write(0, root.player, root.boxes, expander.region(root.player, root.boxes), root.boxHash, -1, root.hcost, -1, -1);
+		while (!open.isEmpty()) {
+			Map.Entry<Integer, RecordSorter.Writer> next = open.pollFirstEntry();
+			int pushes = next.getKey();
+			next.getValue().close();
+			openRecords -= next.getValue().count();
+
+			Path layer = closeLayer(pushes, openFiles.remove(pushes));
+			String solution = expandLayer(pushes, layer);
+			if (solution != null || budget.isExhausted()) {
+				return solution;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Sorts the layer's children, keeps one of each state, and drops those an earlier layer already holds.
+	 * The survivors become the layer's file and their keys are merged into the file of visited states.
+	 */
+	private Path closeLayer(int pushes, Path candidates) throws IOException {
+		List<Path> runs = sorter.sortRuns(candidates);
+		Path layer = sorter.newFile("layer-" + pushes + "-");
+		Path union = sorter.newFile("visited-");
+		ByteBuffer last = ByteBuffer.allocate(keyBytes);
+		boolean hasLast = false;
+
+		try (RecordSorter.Merge merge = sorter.merge(runs);
+				RecordSorter.Reader seen = visited == null ? null : new RecordSorter.Reader(visited, keyBytes, true);
+				RecordSorter.Writer states = new RecordSorter.Writer(layer);
+				RecordSorter.Writer keys = new RecordSorter.Writer(union)) {
+			boolean more = seen != null && seen.next();
+			while (merge.next()) {
+				ByteBuffer buffer = merge.buffer();
+				int offset = merge.offset();
+				// equal states come out of the merge together, and any of them will do
+				if (hasLast && sorter.compare(buffer, offset, last, 0) == 0) {
+					continue;
+				}
+				last.put(0, buffer, offset, keyBytes);
+				hasLast = true;
+
+				while (more && sorter.compare(seen.buffer(), seen.offset(), buffer, offset) < 0) {
+					keys.write(seen.buffer(), seen.offset(), keyBytes);
+					more = seen.next();
+				}
+				if (more && sorter.compare(seen.buffer(), seen.offset(), buffer, offset) == 0) {
+					// an earlier layer reached it with fewer pushes
+					continue;
+				}
+				states.write(buffer, offset, recordBytes);
+				keys.write(buffer, offset, keyBytes);
+			}
+			while (more) {
+				keys.write(seen.buffer(), seen.offset(), keyBytes);
+				more = seen.next();
+			}
+
+			layerBytes += states.count() * recordBytes;
+			storedStates = keys.count();
+			peakStates = Math.max(peakStates, storedStates);
+			peakBytes = Math.max(peakBytes, layerBytes + storedStates * keyBytes);
+		}
+
+		visited = union;
+		while (layers.size() <= pushes) {
+			layers.add(null);
+		}
+		layers.set(pushes, layer);
+		return layer;
+	}
+
+	// reads the layer in order, expanding every state and appending its children to the layers they belong to
+	private String expandLayer(int pushes, Path layer) throws IOException {
+		try (RecordSorter.Reader states = new RecordSorter.Reader(layer, recordBytes, false)) {
+			for (long index = 0; states.next(); index++) {
+				ByteBuffer buffer = states.buffer();
+				int offset = states.offset();
+				int player = read(buffer, offset, boxes);
+				long boxHash = zobrist.hashBoxes(boxes);
+
+				if (expander.isGoal(boxHash, boxes)) {
+					solutionPushes = pushes;
+					return expander.getMoves(toChain(pushes, index));
+				}
+				if (budget.exhausted()) {
+					return null;
+				}
+				expanded++;
+				probe.expanded(pushes, buffer.getInt(offset + keyBytes + HCOST), openRecords);
+
+				expander.region(player, boxes);
+				expander.expand(boxes, boxHash, children);
+				probe.generated(children.count);
+				generated += children.count;
+				for (int i = 0; i < children.count; i++) {
+					int cost = pushes + children.pushes[i];
+					int f = cost + children.hcost[i];
+					if (f > bound) {
+						nextBound = Math.min(nextBound, f);
+						continue;
+					}
+					// the child's key needs its region, which is filled now and not when it is expanded
+					int region = expander.region(children.player[i], children.boxes[i]);
+					write(cost, children.player[i], children.boxes[i], region, children.boxHash[i],
+							children.boxFrom[i] * 4 + children.dir[i], children.hcost[i], pushes, index);
+				}
+			}
+		}
+		return null;
+	}
+
+	// appends a state to the unsorted file of the layer with the given pushes
+	private void write(int pushes, int player, int[] boxes, int region, long boxHash, int move, int hcost, int parentLayer,
+			long parentIndex) throws IOException {
+		record.putLong(0, zobrist.withPlayer(boxHash, region));
+		StateTable.pack(region, boxes, keyWords, 0);
+		for (int w = 0; w < keyWords.length; w++) {
+			record.putLong((w + 1) * Long.BYTES, keyWords[w]);
+		}
+		record.putInt(keyBytes + PLAYER, player);
+		record.putInt(keyBytes + MOVE, move);
+		record.putInt(keyBytes + HCOST, hcost);
+		record.putInt(keyBytes + PARENT_LAYER, parentLayer);
+		record.putLong(keyBytes + PARENT_INDEX, parentIndex);
+
+		RecordSorter.Writer writer = open.get(pushes);
+		if (writer == null) {
+			Path file = sorter.newFile("open-" + pushes + "-");
+			writer = new RecordSorter.Writer(file);
+			open.put(pushes, writer);
+			openFiles.put(pushes, file);
+		}
+		writer.write(record, 0, recordBytes);
+		openRecords++;
+	}
+
+	// fills boxes from the record's key and returns the cell the player stands on
+	private int read(ByteBuffer buffer, int offset, int[] boxes) {
+		for (int w = 0; w < keyWords.length; w++) {
+			keyWords[w] = buffer.getLong(offset + (w + 1) * Long.BYTES);
+		}
+		StateTable.unpack(keyWords, 0, boxes);
+		return buffer.getInt(offset + keyBytes + PLAYER);
+	}
+
+	// reads the records from the goal back to the initial state, one positioned read each, and links them for PushExpander.getMoves
+	private PushNode toChain(int pushes, long index) throws IOException {
+		List<ByteBuffer> path = new ArrayList<>();
+		List<Integer> costs = new ArrayList<>();
+		int layer = pushes;
+		while (index >= 0) {
+			ByteBuffer state = ByteBuffer.allocate(recordBytes);
+			try (FileChannel channel = FileChannel.open(layers.get(layer), StandardOpenOption.READ)) {
+				while (state.hasRemaining() && channel.read(state, index * recordBytes + state.position()) >= 0) {
+					// a positioned read may stop short
+				}
+			}
+			path.add(state);
+			costs.add(layer);
+			layer = state.getInt(keyBytes + PARENT_LAYER);
+			index = state.getLong(keyBytes + PARENT_INDEX);
+		}
+
+		PushNode chain = null;
+		for (int i = path.size() - 1; i >= 0; i--) {
+			ByteBuffer state = path.get(i);
+			int[] cells = new int[boxCount];
+			int player = read(state, 0, cells);
+			int move = state.getInt(keyBytes + MOVE);
+			chain = new PushNode(player, cells, 0, costs.get(i), move < 0 ? -1 : move >> 2, move & 3, chain,
+					state.getInt(keyBytes + HCOST));
+		}
+		return chain;
+	}
+
+	// closes the open files and deletes every file of the pass
+	private void clear() throws IOException {
+		for (RecordSorter.Writer writer : open.values()) {
+			writer.close();
+		}
+		open.clear();
+		openFiles.clear();
+		layers.clear();
+		visited = null;
+		openRecords = 0;
+		layerBytes = 0;
+		storedStates = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private void deleteDirectory() {
+		if (directory == null) {
+			return;
+		}
+		try {
+			clear();
+			Files.deleteIfExists(directory);
+		} catch (IOException ex) {
+			System.err.println("Could not delete " + directory + ": " + ex.getMessage());
+		}
+	}
+
+	/* Stops the search once the budget runs out or is cancelled; solve then returns null */
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/* Reports progress into the given metrics; the open list size reported is the number of children waiting on disk */
+	public void setMetrics(SearchMetrics metrics) {
+		this.probe = metrics.probe(expander.getDeadlocks(), null);
+	}
+
+	public long getExpanded() {
+		return expanded;
+	}
+
+	public long getGenerated() {
+		return generated;
+	}
+
+	/* The most distinct states one pass held on disk */
+	public long getStoredStates() {
+		return peakStates;
+	}
+
+	/* The most bytes the layer and visited files of one pass took on disk */
+	public long getDiskBytes() {
+		return peakBytes;
+	}
+
+	public int getSolutionPushes() {
+		return solutionPushes;
+	}
+
+	public int getPasses() {
+		return pass;
+	}
+}
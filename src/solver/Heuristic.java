@@ -0,0 +1,9 @@
+package solver;
+
+/* Estimate of the remaining cost from a state to the goal, used as a step's hcost */
+public interface Heuristic {
+	// returned when the estimate proves the state can never reach the goal
+	int UNSOLVABLE = Integer.MAX_VALUE;
+
+	int estimate(int player, int[] boxes);
+}
@@ -0,0 +1,13 @@
+package solver;
+
+/* How the push-distance lower bound combines the distances of individual boxes */
+public enum HeuristicMode {
+	// each box is charged its distance to the nearest target, even if boxes share a target
+	NEAREST,
+	// boxes are assigned to distinct targets with the smallest total distance
+	MATCHING;
+
+	public static HeuristicMode parse(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
@@ -0,0 +1,72 @@
+package solver;
+
+import java.util.Arrays;
+
+/* BucketQueue for int elements such as NodeArena indices, so queued nodes are never boxed */
+public class IntBucketQueue {
+	public static final int EMPTY = -1;
+	private static final int INITIAL_BUCKETS = 64;
+	private static final int INITIAL_BUCKET_SIZE = 16;
+
+	private int[][] buckets = new int[INITIAL_BUCKETS][];
+	private int[] counts = new int[INITIAL_BUCKETS];
+	private int min = Integer.MAX_VALUE;
+	private int size;
+
+	public void add(int element, int priority) {
+		if (priority < 0) {
+			throw new IllegalArgumentException("Negative priority: " + priority);
+		}
+		if (priority >= buckets.length) {
+			int length = Math.max(buckets.length * 2, priority + 1);
+			buckets = Arrays.copyOf(buckets, length);
+			counts = Arrays.copyOf(counts, length);
+		}
+
+		int[] bucket = buckets[priority];
+		if (bucket == null) {
+			bucket = buckets[priority] = new int[INITIAL_BUCKET_SIZE];
+		} else if (counts[priority] == bucket.length) {
+			bucket = buckets[priority] = Arrays.copyOf(bucket, bucket.length * 2);
+		}
+
+		bucket[counts[priority]++] = element;
+		min = Math.min(min, priority);
+		size++;
+	}
+
+	/* Removes and returns an element with the lowest priority, or EMPTY */
+	public int poll() {
+		if (size == 0) {
+			return EMPTY;
+		}
+		while (counts[min] == 0) {
+			min++;
+		}
+
+		int element = buckets[min][--counts[min]];
+		if (--size == 0) {
+			min = Integer.MAX_VALUE;
+		}
+		return element;
+	}
+
+	/* The lowest priority currently queued, or Integer.MAX_VALUE when empty */
+	public int peekPriority() {
+		if (size == 0) {
+			return Integer.MAX_VALUE;
+		}
+		while (counts[min] == 0) {
+			min++;
+		}
+		return min;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
@@ -0,0 +1,236 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Push-level iterative deepening A*: depth-first passes that drop every node whose pushes plus estimate
+ * exceed a bound, raising the bound after each pass to the smallest value that went over it. Only the
+ * current path and the children of its nodes are kept, so memory grows with the depth of the search and
+ * not with the number of states. Repeated states are cut with a transposition cache of fixed size that
+ * overwrites whatever slot a new state hashes to; the cache only ever saves work, so a full or colliding
+ * cache costs time but never memory. Slots keep the packed state next to its hash and a hit compares
+ * both, so two states sharing a hash never cut each other and the pushes found stay optimal.
+ *
+ * With an estimate that never overshoots, the first solution found uses the fewest pushes.
+ */
+public class IterativeDeepeningSearch {
+	private static final int MIN_SLOTS = 1 << 10;
+	private static final int FOUND = -1;
+
+	private final PushExpander expander;
+	private final Zobrist zobrist;
+	// one buffer of children per depth, created as the search first reaches that depth
+	private final List<Successors> levels = new ArrayList<>();
+	// the child taken at each depth of the current path, and the order children are tried in at each depth
+	private int[] taken = new int[64];
+	private final List<int[]> orders = new ArrayList<>();
+
+	private final long[] cacheKeys;
+	// the packed state of each slot, in StateTable's layout
+	private final long[] cacheStates;
+	private final int words;
+	private final int[] cachePushes;
+	private final int[] cachePass;
+	private final int cacheMask;
+	private int cacheUsed;
+
+	private SearchBudget budget = new SearchBudget(0, 0);
+	private SearchMetrics.Probe probe;
+	private int bound;
+	private int nextBound;
+	private int pass;
+	private int solutionDepth;
+	private int solutionPushes = -1;
+	private long expanded;
+	private long generated;
+
+	public IterativeDeepeningSearch(MapAnalysis analysis, Zobrist zobrist, SolverConfig config, Heuristic heuristic,
+			DeadlockDetector deadlocks) {
+		this.zobrist = zobrist;
+		this.expander = new PushExpander(analysis, zobrist, heuristic, deadlocks, config.macros ? new Macros(analysis) : null);
+		this.probe = new SearchMetrics().probe(deadlocks, null);
+
+		int boxCount = analysis.getBoard().getBoxCount();
+		int slots = slotsFor(config.memoryMegabytes, boxCount);
+		this.words = StateTable.wordsFor(boxCount);
+		this.cacheKeys = new long[slots];
+		this.cacheStates = new long[slots * words];
+		this.cachePushes = new int[slots];
+		this.cachePass = new int[slots];
+		this.cacheMask = slots - 1;
+	}
+
+	/* Bytes of one cache slot: the state's hash, its packed cells, the pushes it was reached with and the pass that stored it */
+	static int bytesPerSlot(int boxCount) {
+		return (1 + StateTable.wordsFor(boxCount)) * Long.BYTES + 2 * Integer.BYTES;
+	}
+
+	/* The largest power of two of cache slots that fits in the given number of megabytes */
+	static int slotsFor(long megabytes, int boxCount) {
+		long slots = Math.max(MIN_SLOTS, megabytes * (1 << 20) / bytesPerSlot(boxCount));
+		return Integer.highestOneBit((int) Math.min(slots, (1 << 30) / StateTable.wordsFor(boxCount)));
+	}
+
+	/* Deepens until a pass finds a solution, no node went over the bound, or the budget runs out */
+	public String solve() {
+		PushNode root = expander.root();
+		if (root == null) {
+			return null;
+		}
+
+		bound = root.hcost;
+		while (true) {
+			pass++;
+			nextBound = Integer.MAX_VALUE;
+			System.out.println("IDA* pass " + pass + ": pushes + estimate up to " + bound);
+			int result = search(0, root.player, root.boxes, root.boxHash, 0, root.hcost);
+			if (result == FOUND) {
+				probe.publish(0);
+				System.out.println("Number of Pushes: " + solutionPushes);
+				return expander.getMoves(toChain(root));
+			}
+			if (budget.isExhausted() || nextBound == Integer.MAX_VALUE) {
+				probe.publish(0);
+				return null;
+			}
+			bound = nextBound;
+		}
+	}
+
+	// searches below a node; returns FOUND, or 0 when the subtree was exhausted under the bound or the budget ran out
+	private int search(int depth, int player, int[] boxes, long boxHash, int pushes, int hcost) {
+		int f = pushes + hcost;
+		if (f > bound) {
+			nextBound = Math.min(nextBound, f);
+			return 0;
+		}
+		if (expander.isGoal(boxHash, boxes)) {
+			solutionDepth = depth;
+			solutionPushes = pushes;
+			return FOUND;
+		}
+		if (budget.exhausted()) {
+			return 0;
+		}
+
+		int region = expander.region(player, boxes);
+		if (!remember(region, boxes, zobrist.withPlayer(boxHash, region), pushes)) {
+			return 0;
+		}
+		expanded++;
+		probe.expanded(pushes, hcost, depth);
+
+		ensureDepth(depth);
+		Successors children = levels.get(depth);
+		expander.expand(boxes, boxHash, children);
+		probe.generated(children.count);
+		generated += children.count;
+
+		// the children that look closest to the goal are tried first
+		int[] order = orders.get(depth);
+		for (int i = 0; i < children.count; i++) {
+			int j = i;
+			while (j > 0 && children.hcost[order[j - 1]] > children.hcost[i]) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+
+		for (int k = 0; k < children.count; k++) {
+			int i = order[k];
+			taken[depth] = i;
+			int result = search(depth + 1, children.player[i], children.boxes[i], children.boxHash[i], pushes + children.pushes[i],
+					children.hcost[i]);
+			if (result == FOUND) {
+				return FOUND;
+			}
+			if (budget.isExhausted()) {
+				return 0;
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Records that a state was reached in this pass with the given pushes, and returns false when this pass
+	 * already reached it with as few, since everything below it was then searched with at least as much room.
+	 */
+	private boolean remember(int region, int[] boxes, long hash, int pushes) {
+		int slot = (int) (hash ^ hash >>> 32) & cacheMask;
+		if (cacheKeys[slot] == hash && cachePass[slot] == pass && cachePushes[slot] <= pushes
+				&& StateTable.matches(cacheStates, slot * words, region, boxes)) {
+			return false;
+		}
+		if (cachePass[slot] == 0) {
+			cacheUsed++;
+		}
+		// whatever held the slot is replaced; losing it only means its state may be searched again
+		cacheKeys[slot] = hash;
+		StateTable.pack(region, boxes, cacheStates, slot * words);
+		cachePushes[slot] = pushes;
+		cachePass[slot] = pass;
+		return true;
+	}
+
+	private void ensureDepth(int depth) {
+		while (levels.size() <= depth) {
+			Successors children = expander.newSuccessors();
+			levels.add(children);
+			orders.add(new int[children.boxFrom.length]);
+		}
+		if (taken.length <= depth) {
+			taken = Arrays.copyOf(taken, Math.max(depth + 1, taken.length * 2));
+		}
+	}
+
+	// links the children taken along the solution path into nodes for PushExpander.getMoves
+	private PushNode toChain(PushNode root) {
+		PushNode chain = root;
+		for (int depth = 0; depth < solutionDepth; depth++) {
+			Successors children = levels.get(depth);
+			int i = taken[depth];
+			chain = new PushNode(children.player[i], children.boxes[i].clone(), children.boxHash[i], chain.pushes + children.pushes[i],
+					children.boxFrom[i], children.dir[i], chain, children.hcost[i]);
+		}
+		return chain;
+	}
+
+	/* Stops the search once the budget runs out or is cancelled; solve then returns null */
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/* Reports progress into the given metrics; the open list size reported is the depth of the current path */
+	public void setMetrics(SearchMetrics metrics) {
+		this.probe = metrics.probe(expander.getDeadlocks(), null);
+	}
+
+	public long getExpanded() {
+		return expanded;
+	}
+
+	public long getGenerated() {
+		return generated;
+	}
+
+	/* Cache slots that hold a state */
+	public int getCacheEntries() {
+		return cacheUsed;
+	}
+
+	/* Bytes held by the cache, which it allocates in full up front */
+	public long getCacheBytes() {
+		return (long) cacheKeys.length * ((1 + words) * Long.BYTES + 2 * Integer.BYTES);
+	}
+
+	public int getSolutionPushes() {
+		return solutionPushes;
+	}
+
+	public int getPasses() {
+		return pass;
+	}
+}
@@ -0,0 +1,127 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Admissible estimate of the pushes still needed, built from the true push distances of MapAnalysis
+ * (or any other per-goal distance table, such as pull distances back to the initial boxes).
+ * MATCHING solves the box-to-target assignment with the Hungarian method in O(n^3) on buffers that
+ * are reused between calls; NEAREST is a cheaper and looser bound.
+ * States where some box cannot be matched to a target are reported as Heuristic.UNSOLVABLE.
+ */
+public class LowerBound implements Heuristic {
+	// stands in for an unreachable target inside the assignment, large enough that any real total stays below it
+	private static final int BLOCKED = 1 << 20;
+
+	// distance[goal][cell], MapAnalysis.UNREACHABLE where a box cannot get to the goal cell
+	private final int[][] distance;
+	private final HeuristicMode mode;
+	private final int n;
+
+	private final int[][] cost;
+	private final int[] u, v, match, way, minSlack;
+	private final boolean[] used;
+
+	public LowerBound(MapAnalysis analysis, HeuristicMode mode) {
+		this(analysis.getPushDistances(), mode);
+	}
+
+	public LowerBound(int[][] distance, HeuristicMode mode) {
+		this.distance = distance;
+		this.mode = mode;
+		this.n = distance.length;
+		this.cost = new int[n + 1][n + 1];
+		this.u = new int[n + 1];
+		this.v = new int[n + 1];
+		this.match = new int[n + 1];
+		this.way = new int[n + 1];
+		this.minSlack = new int[n + 1];
+		this.used = new boolean[n + 1];
+	}
+
+	@Override
+	public int estimate(int player, int[] boxes) {
+		return mode == HeuristicMode.MATCHING ? matching(boxes) : nearest(boxes);
+	}
+
+	private int nearest(int[] boxes) {
+		int total = 0;
+		for (int box : boxes) {
+			int best = MapAnalysis.UNREACHABLE;
+			for (int t = 0; t < n; t++) {
+				best = Math.min(best, distance[t][box]);
+			}
+			if (best == MapAnalysis.UNREACHABLE) {
+				return UNSOLVABLE;
+			}
+			total += best;
+		}
+		return total;
+	}
+
+	// Hungarian method with row and column potentials; rows are boxes and columns are targets, both 1-based
+	private int matching(int[] boxes) {
+		for (int i = 1; i <= n; i++) {
+			boolean reachable = false;
+			for (int j = 1; j <= n; j++) {
+				int d = distance[j - 1][boxes[i - 1]];
+				reachable |= d != MapAnalysis.UNREACHABLE;
+				cost[i][j] = d == MapAnalysis.UNREACHABLE ? BLOCKED : d;
+			}
+			if (!reachable) {
+				return UNSOLVABLE;
+			}
+		}
+
+		Arrays.fill(u, 0);
+		Arrays.fill(v, 0);
+		Arrays.fill(match, 0);
+
+		for (int i = 1; i <= n; i++) {
+			match[0] = i;
+			int j0 = 0;
+			Arrays.fill(minSlack, Integer.MAX_VALUE);
+			Arrays.fill(used, false);
+
+			do {
+				used[j0] = true;
+				int i0 = match[j0], delta = Integer.MAX_VALUE, j1 = 0;
+				for (int j = 1; j <= n; j++) {
+					if (used[j]) {
+						continue;
+					}
+					int slack = cost[i0][j] - u[i0] - v[j];
+					if (slack < minSlack[j]) {
+						minSlack[j] = slack;
+						way[j] = j0;
+					}
+					if (minSlack[j] < delta) {
+						delta = minSlack[j];
+						j1 = j;
+					}
+				}
+				for (int j = 0; j <= n; j++) {
+					if (used[j]) {
+						u[match[j]] += delta;
+						v[j] -= delta;
+					} else {
+						minSlack[j] -= delta;
+					}
+				}
+				j0 = j1;
+			} while (match[j0] != 0);
+
+			do {
+				int j1 = way[j0];
+				match[j0] = match[j1];
+				j0 = j1;
+			} while (j0 != 0);
+		}
+
+		int total = 0;
+		for (int j = 1; j <= n; j++) {
+			total += cost[match[j]][j];
+		}
+		return total >= BLOCKED ? UNSOLVABLE : total;
+	}
+}
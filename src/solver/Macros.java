@@ -0,0 +1,393 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Runs of pushes that the push searches make as a single child, so the states in between are never
+ * generated. A tunnel is a one-wide corridor whose walls close in on both the box and the player behind
+ * it; a box pushed into one can only be pushed on or left blocking the corridor, so it is pushed until it
+ * leaves the tunnel or reaches a target. A goal room holds every target and is reached from the rest of the
+ * level through a single entrance cell; the order in which its targets can be filled from the deepest one
+ * out is worked out once, and a box pushed onto the entrance is taken straight to the next target in it.
+ */
+public class Macros {
+	// rooms larger than this are not used; working out the fill order grows with the room's size squared
+	private static final int MAX_ROOM = 256;
+	private static final int UNREACHABLE = MapAnalysis.UNREACHABLE;
+
+	private final Board board;
+	// whether a box on the cell pushed in the direction stands in a tunnel and is pushed on, indexed cell * 4 + dir
+	private final boolean[] tunnel;
+
+	// the goal room, with entrance -1 when the level has none
+	private int entrance = -1;
+	private int outside;
+	private int entryDir;
+	private boolean[] inRoom;
+	// position of each room target in the fill order, -1 on other cells
+	private int[] rank;
+	// for each target in the fill order, the moves that take a box to it from the entrance and where they leave the player
+	private int[] order = new int[0];
+	private String[] paths;
+	private int[] pathPushes;
+	private int[] pathPlayer;
+
+	// buffers for the player walks and box paths inside the room
+	private int[] mark, via, queue;
+	private int stamp;
+
+	public Macros(MapAnalysis analysis) {
+		this.board = analysis.getBoard();
+		this.tunnel = new boolean[board.size * 4];
+		findTunnels();
+		findGoalRoom();
+	}
+
+	private void findTunnels() {
+		for (int cell = 0; cell < board.size; cell++) {
+			if (board.wall[cell] || board.target[cell]) {
+				continue;
+			}
+			for (int dir = 0; dir < 4; dir++) {
+				int behind = board.next(cell, Board.opposite(dir));
+				tunnel[cell * 4 + dir] = behind >= 0 && board.next(cell, dir) >= 0 && walled(cell, dir) && walled(behind, dir);
+			}
+		}
+	}
+
+	// both sides of the cell across the direction are walls
+	private boolean walled(int cell, int dir) {
+		int side = dir < 2 ? Board.UP : Board.RIGHT;
+		return board.next(cell, side) < 0 && board.next(cell, Board.opposite(side)) < 0;
+	}
+
+	/* Whether a box just pushed onto the cell in the direction should be pushed on */
+	boolean isTunnel(int cell, int dir) {
+		return tunnel[cell * 4 + dir];
+	}
+
+	/* The goal room's entrance cell, or -1 when the level has none */
+	int getEntrance() {
+		return entrance;
+	}
+
+	/* The direction a box is pushed in to enter the goal room */
+	int getEntryDir() {
+		return entryDir;
+	}
+
+	/*
+	 * How many targets of the fill order the boxes already fill, or -1 when a box in the goal room stands
+	 * off that order or the order has no further target to take a box to.
+	 */
+	int filled(int[] boxes) {
+		int count = 0, last = -1;
+		for (int box : boxes) {
+			if (inRoom[box]) {
+				if (rank[box] < 0) {
+					return -1;
+				}
+				count++;
+				last = Math.max(last, rank[box]);
+			}
+		}
+		// the boxes stand on distinct cells, so they fill a prefix exactly when the highest rank is one below their count
+		return last == count - 1 && count < order.length ? count : -1;
+	}
+
+	/* The target a box on the entrance is taken to when the given number of targets are filled */
+	int target(int filled) {
+		return order[filled];
+	}
+
+	/* Pushes the goal-room macro makes after the push onto the entrance */
+	int pushes(int filled) {
+		return pathPushes[filled];
+	}
+
+	/* Where the goal-room macro leaves the player */
+	int player(int filled) {
+		return pathPlayer[filled];
+	}
+
+	/* The moves of the goal-room macro, starting with the player behind the box on the entrance */
+	String path(int filled) {
+		return paths[filled];
+	}
+
+	/*
+	 * Looks for the smallest region holding every target that becomes cut off from the player and the boxes
+	 * when a single corridor cell is removed; that cell is the entrance.
+	 */
+	private void findGoalRoom() {
+		if (board.targets.length == 0) {
+			return;
+		}
+		mark = new int[board.size];
+		via = new int[board.size];
+		queue = new int[board.size];
+
+		int bestSize = MAX_ROOM + 1;
+		for (int cell = 0; cell < board.size; cell++) {
+			if (board.wall[cell] || board.target[cell] || cell == board.player || openNeighbours(cell) != 2) {
+				continue;
+			}
+			int size = flood(board.targets[0], cell, bestSize - 1);
+			if (size < 0 || mark[board.player] == stamp || !holdsTargetsOnly()) {
+				continue;
+			}
+			bestSize = size;
+			entrance = cell;
+			inRoom = new boolean[board.size];
+			for (int i = 0; i < size; i++) {
+				inRoom[queue[i]] = true;
+			}
+		}
+		if (entrance < 0) {
+			return;
+		}
+
+		// the box must come in straight: from the one open neighbour outside the room, on through the entrance into it
+		outside = -1;
+		for (int dir = 0; dir < 4; dir++) {
+			int n = board.next(entrance, dir);
+			if (n >= 0 && !inRoom[n]) {
+				outside = n;
+				entryDir = Board.opposite(dir);
+			}
+		}
+		int inside = board.next(entrance, entryDir);
+		if (outside < 0 || inside < 0 || !inRoom[inside]) {
+			entrance = -1;
+			return;
+		}
+
+		findFillOrder();
+		if (order.length == 0) {
+			entrance = -1;
+		}
+	}
+
+	private int openNeighbours(int cell) {
+		int count = 0;
+		for (int dir = 0; dir < 4; dir++) {
+			if (board.next(cell, dir) >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// the last flood holds every target and no box
+	private boolean holdsTargetsOnly() {
+		for (int target : board.targets) {
+			if (mark[target] != stamp) {
+				return false;
+			}
+		}
+		for (int cell : board.boxes) {
+			if (mark[cell] == stamp) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// floods from the start around the removed cell into queue; returns the size, or -1 once it passes the limit
+	private int flood(int start, int removed, int limit) {
+		stamp++;
+		int head = 0, tail = 0;
+		mark[start] = stamp;
+		queue[tail++] = start;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int n = board.next(cell, dir);
+				if (n >= 0 && n != removed && mark[n] != stamp) {
+					if (tail == limit) {
+						return -1;
+					}
+					mark[n] = stamp;
+					queue[tail++] = n;
+				}
+			}
+		}
+		return tail;
+	}
+
+	/*
+	 * Greedily fills the farthest target whose box leaves every other target still reachable from the
+	 * entrance, treating filled targets as walls. The order stops early if no target qualifies.
+	 */
+	private void findFillOrder() {
+		boolean[] filled = new boolean[board.size];
+		List<Integer> chosen = new ArrayList<>();
+		List<String> moves = new ArrayList<>();
+		List<Integer> pushes = new ArrayList<>();
+		List<Integer> players = new ArrayList<>();
+
+		int[] parent = new int[board.size * 4];
+		int[] distance = boxPaths(filled, parent);
+		while (chosen.size() < board.targets.length) {
+			int pick = -1, far = -1;
+			int[] pickParent = null, pickDistance = null;
+			for (int target : board.targets) {
+				int d = distance[target];
+				if (filled[target] || d == UNREACHABLE || d <= far) {
+					continue;
+				}
+				filled[target] = true;
+				int[] afterParent = new int[board.size * 4];
+				int[] after = boxPaths(filled, afterParent);
+				filled[target] = false;
+
+				boolean open = true;
+				for (int other : board.targets) {
+					if (!filled[other] && other != target && after[other] == UNREACHABLE) {
+						open = false;
+						break;
+					}
+				}
+				if (open) {
+					pick = target;
+					far = d;
+					pickParent = afterParent;
+					pickDistance = after;
+				}
+			}
+			if (pick < 0) {
+				break;
+			}
+
+			StringBuilder path = new StringBuilder();
+			players.add(appendBoxPath(pick, parent, filled, path));
+			chosen.add(pick);
+			moves.add(path.toString());
+			pushes.add(far);
+			filled[pick] = true;
+			parent = pickParent;
+			distance = pickDistance;
+		}
+
+		order = new int[chosen.size()];
+		paths = new String[order.length];
+		pathPushes = new int[order.length];
+		pathPlayer = new int[order.length];
+		rank = new int[board.size];
+		Arrays.fill(rank, -1);
+		for (int i = 0; i < order.length; i++) {
+			order[i] = chosen.get(i);
+			paths[i] = moves.get(i);
+			pathPushes[i] = pushes.get(i);
+			pathPlayer[i] = players.get(i);
+			rank[order[i]] = i;
+		}
+	}
+
+	/*
+	 * Breadth-first search over a single box in the room, starting on the entrance with the player outside.
+	 * A state is the box's cell and the direction it was last pushed in, which fixes the player's cell.
+	 * Returns the fewest pushes to each cell and fills parent with the state each state was reached from.
+	 */
+	private int[] boxPaths(boolean[] filled, int[] parent) {
+		int[] distance = new int[board.size];
+		int[] states = new int[board.size * 4];
+		Arrays.fill(distance, UNREACHABLE);
+		Arrays.fill(parent, -2);
+
+		int head = 0, tail = 0;
+		int start = entrance * 4 + entryDir;
+		parent[start] = -1;
+		distance[entrance] = 0;
+		states[tail++] = start;
+
+		while (head < tail) {
+			int state = states[head++];
+			int box = state >> 2;
+			walk(board.next(box, Board.opposite(state & 3)), box, filled);
+			for (int dir = 0; dir < 4; dir++) {
+				int behind = board.next(box, Board.opposite(dir));
+				int to = board.next(box, dir);
+				if (behind < 0 || to < 0 || mark[behind] != stamp || !inRoom[to] || filled[to] || parent[to * 4 + dir] != -2) {
+					continue;
+				}
+				parent[to * 4 + dir] = state;
+				states[tail++] = to * 4 + dir;
+				if (distance[to] == UNREACHABLE) {
+					distance[to] = distance[box] + 1;
+				}
+			}
+		}
+		return distance;
+	}
+
+	// rebuilds the moves of the shortest box path to the target, and returns the player's cell at its end
+	private int appendBoxPath(int target, int[] parent, boolean[] filled, StringBuilder moves) {
+		// the first state to reach the target in breadth-first order has the fewest pushes
+		int end = -1;
+		int best = UNREACHABLE;
+		for (int dir = 0; dir < 4; dir++) {
+			int state = target * 4 + dir;
+			if (parent[state] != -2) {
+				int length = 0;
+				for (int s = state; parent[s] != -1; s = parent[s]) {
+					length++;
+				}
+				if (length < best) {
+					best = length;
+					end = state;
+				}
+			}
+		}
+
+		List<Integer> chain = new ArrayList<>();
+		for (int s = end; s != -1; s = parent[s]) {
+			chain.add(s);
+		}
+		int player = outside;
+		for (int i = chain.size() - 1; i > 0; i--) {
+			int from = chain.get(i) >> 2;
+			int dir = chain.get(i - 1) & 3;
+			walk(player, from, filled);
+			appendWalk(board.next(from, Board.opposite(dir)), player, moves);
+			moves.append(Board.MOVES[dir]);
+			player = from;
+		}
+		return player;
+	}
+
+	// floods the player's cells in the room, the entrance and the cell outside it, around the box and the filled targets
+	private void walk(int player, int box, boolean[] filled) {
+		stamp++;
+		int head = 0, tail = 0;
+		mark[player] = stamp;
+		queue[tail++] = player;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int n = board.next(cell, dir);
+				if (n < 0 || n == box || mark[n] == stamp || filled[n] || !(inRoom[n] || n == entrance || n == outside)) {
+					continue;
+				}
+				mark[n] = stamp;
+				via[n] = dir;
+				queue[tail++] = n;
+			}
+		}
+	}
+
+	// appends the last walk's path from its start to the cell
+	private void appendWalk(int to, int from, StringBuilder moves) {
+		int start = moves.length();
+		for (int cell = to; cell != from; cell = board.next(cell, Board.opposite(via[cell]))) {
+			moves.append(Board.MOVES[via[cell]]);
+		}
+		for (int i = start, j = moves.length() - 1; i < j; i++, j--) {
+			char t = moves.charAt(i);
+			moves.setCharAt(i, moves.charAt(j));
+			moves.setCharAt(j, t);
+		}
+	}
+}
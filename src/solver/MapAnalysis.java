@@ -0,0 +1,127 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Facts about a level that depend only on its walls and targets, computed once before searching.
+ * A floor cell is dead when a box standing on it can never be moved onto any target, so pushing
+ * a box there can be rejected with a single lookup.
+ */
+public class MapAnalysis {
+	// push distance of a cell from which a target cannot be reached
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final Board board;
+	private final boolean[] dead;
+	// fewest pushes to bring a box from a cell to each target, indexed [target][cell], ignoring other boxes
+	private final int[][] pushDistance;
+	private int liveCells;
+
+	public MapAnalysis(Board board) {
+		this.board = board;
+		this.dead = new boolean[board.size];
+		this.pushDistance = new int[board.targets.length][];
+		for (int t = 0; t < board.targets.length; t++) {
+			pushDistance[t] = pullDistances(board.targets[t]);
+		}
+		findDeadSquares();
+	}
+
+	// pulls a box backwards from the target breadth first; a pull is one push in reverse
+	private int[] pullDistances(int target) {
+		int[] distance = new int[board.size];
+		int[] queue = new int[board.size];
+		int head = 0, tail = 0;
+
+		Arrays.fill(distance, UNREACHABLE);
+		distance[target] = 0;
+		queue[tail++] = target;
+
+		// a box on a cell can be pulled one step in a direction when the player has room to stand and step back
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int to = board.next(cell, dir);
+				if (to < 0 || distance[to] != UNREACHABLE || board.next(to, dir) < 0) {
+					continue;
+				}
+				distance[to] = distance[cell] + 1;
+				queue[tail++] = to;
+			}
+		}
+
+		return distance;
+	}
+
+	// whatever no pull from any target reaches is dead
+	private void findDeadSquares() {
+		for (int cell = 0; cell < board.size; cell++) {
+			boolean live = false;
+			for (int[] distance : pushDistance) {
+				live |= distance[cell] != UNREACHABLE;
+			}
+			dead[cell] = !board.wall[cell] && !live;
+			if (live) {
+				liveCells++;
+			}
+		}
+	}
+
+	/* Fewest pushes to move a box from the cell onto the given target (an index into the board's targets), or UNREACHABLE */
+	public int getPushDistance(int target, int cell) {
+		return pushDistance[target][cell];
+	}
+
+	/* All push distances, indexed [target][cell]; shared, not to be modified */
+	int[][] getPushDistances() {
+		return pushDistance;
+	}
+
+	/* Fewest pushes to bring a box from the given cell to every other cell, ignoring other boxes */
+	public int[] pushDistancesFrom(int start) {
+		int[] distance = new int[board.size];
+		int[] queue = new int[board.size];
+		int head = 0, tail = 0;
+
+		Arrays.fill(distance, UNREACHABLE);
+		distance[start] = 0;
+		queue[tail++] = start;
+
+		// a box can be pushed in a direction when the player can stand on its other side
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int to = board.next(cell, dir);
+				if (to < 0 || distance[to] != UNREACHABLE || board.next(cell, Board.opposite(dir)) < 0) {
+					continue;
+				}
+				distance[to] = distance[cell] + 1;
+				queue[tail++] = to;
+			}
+		}
+
+		return distance;
+	}
+
+	public int getTargetCount() {
+		return pushDistance.length;
+	}
+
+	/* Whether a box on this cell can never reach a target */
+	public boolean isDead(int cell) {
+		return dead[cell];
+	}
+
+	public boolean isDead(int row, int col) {
+		return dead[board.cell(row, col)];
+	}
+
+	/* Number of cells from which a box can still reach some target */
+	public int getLiveCells() {
+		return liveCells;
+	}
+
+	public Board getBoard() {
+		return board;
+	}
+}
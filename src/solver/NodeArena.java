@@ -0,0 +1,108 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Search nodes stored as rows of parallel primitive arrays instead of one object per node.
+ * A node is an int index holding its parent's index, the move that produced it, its cost so far,
+ * its estimate, its state packed the same way as in StateTable and the Zobrist hash of its boxes. Storage grows a chunk at a time,
+ * so existing rows are never copied and no per-node objects or references exist for the GC to trace.
+ */
+public class NodeArena {
+	public static final int NO_PARENT = -1;
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final long GIGABYTE = 1L << 30;
+
+	private final int words;
+	private int[][] parents = new int[0][];
+	private int[][] moves = new int[0][];
+	private int[][] costs = new int[0][];
+	private int[][] estimates = new int[0][];
+	private long[][] states = new long[0][];
+	private long[][] boxHashes = new long[0][];
+	private int size;
+
+	public NodeArena(int boxCount) {
+		this.words = StateTable.wordsFor(boxCount);
+	}
+
+	/* Appends a node and returns its index; boxHash is kept so that the search never has to hash the boxes again */
+	public int add(int parent, int move, int cost, int estimate, int player, int[] boxes, long boxHash) {
+		int chunk = size >>> CHUNK_BITS;
+		if (chunk == parents.length) {
+			addChunk();
+		}
+
+		int row = size & CHUNK_MASK;
+		parents[chunk][row] = parent;
+		moves[chunk][row] = move;
+		costs[chunk][row] = cost;
+		estimates[chunk][row] = estimate;
+		StateTable.pack(player, boxes, states[chunk], row * words);
+		boxHashes[chunk][row] = boxHash;
+		return size++;
+	}
+
+	private void addChunk() {
+		int chunks = parents.length + 1;
+		parents = Arrays.copyOf(parents, chunks);
+		moves = Arrays.copyOf(moves, chunks);
+		costs = Arrays.copyOf(costs, chunks);
+		estimates = Arrays.copyOf(estimates, chunks);
+		states = Arrays.copyOf(states, chunks);
+		boxHashes = Arrays.copyOf(boxHashes, chunks);
+
+		parents[chunks - 1] = new int[CHUNK_SIZE];
+		moves[chunks - 1] = new int[CHUNK_SIZE];
+		costs[chunks - 1] = new int[CHUNK_SIZE];
+		estimates[chunks - 1] = new int[CHUNK_SIZE];
+		states[chunks - 1] = new long[CHUNK_SIZE * words];
+		boxHashes[chunks - 1] = new long[CHUNK_SIZE];
+	}
+
+	public int getParent(int node) {
+		return parents[node >>> CHUNK_BITS][node & CHUNK_MASK];
+	}
+
+	public int getMove(int node) {
+		return moves[node >>> CHUNK_BITS][node & CHUNK_MASK];
+	}
+
+	public int getCost(int node) {
+		return costs[node >>> CHUNK_BITS][node & CHUNK_MASK];
+	}
+
+	public int getEstimate(int node) {
+		return estimates[node >>> CHUNK_BITS][node & CHUNK_MASK];
+	}
+
+	public long getBoxHash(int node) {
+		return boxHashes[node >>> CHUNK_BITS][node & CHUNK_MASK];
+	}
+
+	/* Unpacks the node's box cells into boxes and returns its player cell */
+	public int getState(int node, int[] boxes) {
+		return StateTable.unpack(states[node >>> CHUNK_BITS], (node & CHUNK_MASK) * words, boxes);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Bytes one node takes in the arena */
+	public int bytesPerNode() {
+		return 4 * Integer.BYTES + (words + 1) * Long.BYTES;
+	}
+
+	/* Bytes currently allocated, including the unused rows of the last chunk */
+	public long allocatedBytes() {
+		return (long) parents.length * CHUNK_SIZE * bytesPerNode();
+	}
+
+	/* How many nodes fit in a gigabyte, counting extra bytes spent per node elsewhere (open list, table) */
+	public long nodesPerGigabyte(int extraBytesPerNode) {
+		return GIGABYTE / (bytesPerNode() + extraBytesPerNode);
+	}
+}
@@ -0,0 +1,239 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * The same open-addressing table as StateTable, kept outside the Java heap so that it can grow past the
+ * heap and the GC never scans it. Every slot has a fixed width: the state's hash, its cost off by one so
+ * that 0 marks an empty slot, and the state packed 16 bits per cell. Slots are probed linearly and live in
+ * segments of at most a gigabyte, since a ByteBuffer is indexed by int, so the table as a whole can grow
+ * to many gigabytes.
+ *
+ * Segments are direct buffers, which count against -XX:MaxDirectMemorySize (by default the size of the
+ * heap), or, when a directory is given, memory-mapped temporary files in it, which the operating system
+ * pages in and out and deletes once they are unmapped. When the table grows, the old segments are freed
+ * (or unmapped) as soon as their slots are rehashed, through the JDK's buffer cleaner in jdk.unsupported;
+ * on a runtime without it, and for the segments of a table that is simply dropped, the memory is released
+ * when the GC collects the buffers.
+ */
+public class OffHeapStateTable implements StateStore {
+	private static final int MAX_SEGMENT_BYTES = 1 << 30;
+	// byte offsets within a slot
+	private static final int HASH = 0, COST = 8, KEY = 16;
+	private static final int EMPTY = 0;
+	// sun.misc.Unsafe.invokeCleaner, which frees a direct or mapped buffer at once; null where it is not available
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final int words;
+	private final int slotBytes;
+	private final Path directory;
+	// the packed state being looked up
+	private final long[] key;
+
+	private ByteBuffer[] segments;
+	private int segmentShift;
+	private long segmentMask;
+	private long mask;
+	private long size;
+	private long resizeAt;
+
+	/* A table kept in direct buffers */
+	public OffHeapStateTable(int boxCount, int capacity) throws IOException {
+		this(boxCount, capacity, null);
+	}
+
+	/* A table kept in memory-mapped temporary files in the directory, or in direct buffers when it is null */
+	public OffHeapStateTable(int boxCount, int capacity, Path directory) throws IOException {
+		this.words = StateTable.wordsFor(boxCount);
+		this.slotBytes = KEY + words * Long.BYTES;
+		this.directory = directory;
+		this.key = new long[words];
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		allocate(Long.highestOneBit(Math.max(capacity, 16) - 1) << 1);
+	}
+
+	private void allocate(long capacity) throws IOException {
+		long segmentSlots = Math.min(capacity, Long.highestOneBit(MAX_SEGMENT_BYTES / slotBytes));
+		segmentShift = Long.numberOfTrailingZeros(segmentSlots);
+		segmentMask = segmentSlots - 1;
+		segments = new ByteBuffer[(int) (capacity / segmentSlots)];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = newSegment((int) segmentSlots * slotBytes);
+		}
+		mask = capacity - 1;
+		resizeAt = capacity / 4 * 3;
+	}
+
+	// new segments read as all zeros, that is, all slots empty
+	private ByteBuffer newSegment(int bytes) throws IOException {
+		if (directory == null) {
+			return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		}
+		Path file = Files.createTempFile(directory, "states-", ".bin");
+		// the mapping outlives the channel, and the file goes once both are gone
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	@Override
+	public int get(int player, int[] boxes, long hash) {
+		long slot = find(player, boxes, hash);
+		int cost = segment(slot).getInt(offset(slot) + COST);
+		return cost == EMPTY ? -1 : cost - 1;
+	}
+
+	@Override
+	public void put(int player, int[] boxes, long hash, int cost) {
+		long slot = find(player, boxes, hash);
+		ByteBuffer segment = segment(slot);
+		int offset = offset(slot);
+		if (segment.getInt(offset + COST) == EMPTY) {
+			segment.putLong(offset + HASH, hash);
+			for (int w = 0; w < words; w++) {
+				segment.putLong(offset + KEY + w * Long.BYTES, key[w]);
+			}
+			segment.putInt(offset + COST, cost + 1);
+			if (++size > resizeAt) {
+				grow();
+			}
+			return;
+		}
+		segment.putInt(offset + COST, cost + 1);
+	}
+
+	// linear probing from the hash's home slot until the state or an empty slot is found; leaves the packed state in key
+	private long find(int player, int[] boxes, long hash) {
+		StateTable.pack(player, boxes, key, 0);
+		long slot = home(hash);
+		while (true) {
+			ByteBuffer segment = segment(slot);
+			int offset = offset(slot);
+			if (segment.getInt(offset + COST) == EMPTY) {
+				return slot;
+			}
+			if (segment.getLong(offset + HASH) == hash && matches(segment, offset)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean matches(ByteBuffer segment, int offset) {
+		for (int w = 0; w < words; w++) {
+			if (segment.getLong(offset + KEY + w * Long.BYTES) != key[w]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long home(long hash) {
+		return (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private ByteBuffer segment(long slot) {
+		return segments[(int) (slot >>> segmentShift)];
+	}
+
+	private int offset(long slot) {
+		return (int) (slot & segmentMask) * slotBytes;
+	}
+
+	private void grow() {
+		ByteBuffer[] old = segments;
+		long oldSegmentSlots = segmentMask + 1;
+		try {
+			allocate((mask + 1) * 2);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		for (ByteBuffer segment : old) {
+			for (int offset = 0; offset < oldSegmentSlots * slotBytes; offset += slotBytes) {
+				if (segment.getInt(offset + COST) == EMPTY) {
+					continue;
+				}
+				long slot = home(segment.getLong(offset + HASH));
+				while (segment(slot).getInt(offset(slot) + COST) != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				segment(slot).put(offset(slot), segment, offset, slotBytes);
+			}
+			// nothing refers to the old segment any more, so its memory can go before the next one is rehashed
+			release(segment);
+		}
+	}
+
+	// frees a segment's memory now instead of whenever the GC collects it; left to the GC when the JDK does not allow it
+	private static void release(ByteBuffer segment) {
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, segment);
+		} catch (ReflectiveOperationException | IllegalArgumentException ex) {
+			// the GC frees it later
+		}
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public long capacity() {
+		return mask + 1;
+	}
+
+	@Override
+	public void clear() {
+		for (ByteBuffer segment : segments) {
+			for (int offset = 0; offset < segment.capacity(); offset += slotBytes) {
+				segment.putInt(offset + COST, EMPTY);
+			}
+		}
+		size = 0;
+	}
+
+	@Override
+	public double bytesPerEntry() {
+		return size == 0 ? 0 : (double) bytes() / size;
+	}
+
+	@Override
+	public long bytes() {
+		return capacity() * slotBytes;
+	}
+}
@@ -0,0 +1,314 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/*
+ * Push-level search spread over several threads by hashing (HDA*). Every box configuration is owned
+ * by one worker, picked from its box hash, and only the owner keeps it in its open list and its shard
+ * of the transposition table. Children owned by other workers are sent over lock-free queues in batches.
+ *
+ * The search is over when no node is queued, in flight or being expanded anywhere, which a single
+ * counter tracks: a node is counted before it is handed to any open list or queue and uncounted only
+ * after its own children have been counted. For BFS and A* a found solution only becomes the incumbent;
+ * workers keep going, dropping nodes whose lower bound cannot beat it, until the counter reaches zero,
+ * so the incumbent is push-optimal. Weighted A* and greedy stop at the first solution.
+ * When the budget runs out the workers stop early and the incumbent, if any, is returned as it is.
+ */
+public class ParallelSearch {
+	private static final int BATCH_SIZE = 64;
+	// expansions between flushes of partly filled batches, so other workers are not kept waiting
+	private static final int FLUSH_INTERVAL = 32;
+	private static final long IDLE_WAIT_NANOS = 20_000;
+
+	private final MapAnalysis analysis;
+	private final Zobrist zobrist;
+	private final SolverConfig config;
+	private final Supplier<Heuristic> heuristics;
+	private final DeadlockDetector deadlocks;
+	// read-only once built, so the workers share it
+	private final Macros macros;
+	private final boolean optimal;
+	private final Worker[] workers;
+
+	private final AtomicLong work = new AtomicLong();
+	// expansions of all workers as of their last flush, checked against the budget's node limit
+	private final AtomicLong expandedTotal = new AtomicLong();
+	private volatile boolean stopped;
+	private volatile int bestPushes = Integer.MAX_VALUE;
+	private PushNode best;
+	private volatile Throwable failure;
+	private SearchBudget budget = new SearchBudget(0, 0);
+	private SearchMetrics metrics = new SearchMetrics();
+
+	/* heuristics hands out a separate heuristic for each worker, since heuristics keep scratch buffers */
+	public ParallelSearch(MapAnalysis analysis, Zobrist zobrist, SolverConfig config, Supplier<Heuristic> heuristics,
+			DeadlockDetector deadlocks) {
+		this.analysis = analysis;
+		this.zobrist = zobrist;
+		this.config = config;
+		this.heuristics = heuristics;
+		this.deadlocks = deadlocks;
+		this.macros = config.macros ? new Macros(analysis) : null;
+		this.optimal = config.strategy == SearchStrategy.BFS || config.strategy == SearchStrategy.ASTAR;
+		this.workers = new Worker[Math.max(1, config.threads)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(i);
+		}
+	}
+
+	/* Stops the workers once the budget runs out or is cancelled; its node limit counts the expansions of all of them */
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/* Has every worker report its progress into the given metrics */
+	public void setMetrics(SearchMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/* Searches with all workers and returns the move string of the best solution, or null */
+	public String solve() {
+		PushNode root = workers[0].expander.root();
+		if (root == null) {
+			return null;
+		}
+
+		work.set(1);
+		workers[owner(root.boxHash)].inbox.add(new PushNode[] {root});
+
+		Thread[] threads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			threads[i] = new Thread(workers[i], "SokoBot-worker-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				stopped = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		for (Worker worker : workers) {
+			deadlocks.merge(worker.expander.getDeadlocks());
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Parallel search failed", failure);
+		}
+
+		PushNode goal = getBest();
+		if (goal == null) {
+			return null;
+		}
+		System.out.println("Number of Pushes: " + goal.pushes);
+		return workers[0].expander.getMoves(goal);
+	}
+
+	// spreads box hashes evenly over the workers
+	private int owner(long boxHash) {
+		return (int) (((boxHash * 0x9E3779B97F4A7C15L) >>> 33) % workers.length);
+	}
+
+	private synchronized void offer(PushNode goal) {
+		if (goal.pushes < bestPushes) {
+			best = goal;
+			bestPushes = goal.pushes;
+		}
+		if (!optimal) {
+			stopped = true;
+		}
+	}
+
+	private synchronized PushNode getBest() {
+		return best;
+	}
+
+	/* Nodes expanded by all workers */
+	public long getExpanded() {
+		long expanded = 0;
+		for (Worker worker : workers) {
+			expanded += worker.expanded;
+		}
+		return expanded;
+	}
+
+	/* Children handed on by all workers */
+	public long getGenerated() {
+		long generated = 0;
+		for (Worker worker : workers) {
+			generated += worker.generated;
+		}
+		return generated;
+	}
+
+	/* States in the table shards of all workers */
+	public long getTableEntries() {
+		long entries = 0;
+		for (Worker worker : workers) {
+			entries += worker.minPushes.size();
+		}
+		return entries;
+	}
+
+	public long getTableBytes() {
+		long bytes = 0;
+		for (Worker worker : workers) {
+			bytes += worker.minPushes.bytes();
+		}
+		return bytes;
+	}
+
+	public int getThreads() {
+		return workers.length;
+	}
+
+	private class Worker implements Runnable {
+		final int id;
+		final ConcurrentLinkedQueue<PushNode[]> inbox = new ConcurrentLinkedQueue<>();
+		final PushNode[][] outbox;
+		final int[] outCount;
+		final BucketQueue<PushNode> open = new BucketQueue<>();
+		final StateStore minPushes;
+		final PushExpander expander;
+		final PushNode[] children;
+		volatile long expanded;
+		volatile long generated;
+		int sinceFlush;
+		// expansions already added to expandedTotal
+		long counted;
+		SearchMetrics.Probe probe;
+
+		Worker(int id) {
+			this.id = id;
+			this.outbox = new PushNode[workers.length][BATCH_SIZE];
+			this.outCount = new int[workers.length];
+			Board board = analysis.getBoard();
+			this.minPushes = StateStore.create(board.boxes.length, Math.max(config.tableCapacity / workers.length, 16), config);
+			this.expander = new PushExpander(analysis, zobrist, heuristics.get(),
+					new DeadlockDetector(analysis, config.pruning), macros);
+			this.children = new PushNode[expander.maxChildren()];
+		}
+
+		@Override
+		public void run() {
+			probe = metrics.probe(expander.getDeadlocks(), minPushes);
+			try {
+				search();
+				probe.publish(0);
+			} catch (Throwable ex) {
+				failure = ex;
+				stopped = true;
+			}
+		}
+
+		private void search() {
+			while (!stopped) {
+				receive();
+
+				PushNode n = open.poll();
+				if (n == null) {
+					flush();
+					if (work.get() == 0) {
+						return;
+					}
+					if (inbox.isEmpty()) {
+						LockSupport.parkNanos(IDLE_WAIT_NANOS);
+					}
+					continue;
+				}
+
+				process(n);
+				// the node itself is done; its children were counted as they were handed on
+				work.decrementAndGet();
+
+				if (++sinceFlush >= FLUSH_INTERVAL) {
+					flush();
+					// the budget is shared, so it is only polled between batches
+					long total = expandedTotal.addAndGet(expanded - counted);
+					counted = expanded;
+					if (budget.expired() || total >= budget.getNodeLimit()) {
+						// marked on the budget, so the caller can tell the search was cut short
+						budget.exhaust();
+						stopped = true;
+					}
+				}
+			}
+		}
+
+		// expands a node this worker owns and hands its children on
+		private void process(PushNode n) {
+			if (n.pushes + n.hcost >= bestPushes) {
+				return;
+			}
+			if (expander.isGoal(n)) {
+				offer(n);
+				return;
+			}
+
+			int region = expander.region(n);
+			long hash = expander.hash(n, region);
+			int seen = minPushes.get(region, n.boxes, hash);
+			if (seen >= 0 && n.pushes >= seen) {
+				return;
+			}
+			minPushes.put(region, n.boxes, hash, n.pushes);
+			expanded++;
+			probe.expanded(n.pushes, n.hcost, open.size());
+
+			int count = expander.expand(n, children), sent = 0;
+			for (int i = 0; i < count; i++) {
+				PushNode child = children[i];
+				if (child.pushes + child.hcost >= bestPushes) {
+					continue;
+				}
+				// counted before it leaves, since a full batch goes to its owner at once
+				work.incrementAndGet();
+				send(child);
+				sent++;
+			}
+			generated += sent;
+			probe.generated(sent);
+		}
+
+		private void send(PushNode child) {
+			int to = owner(child.boxHash);
+			if (to == id) {
+				open.add(child, config.strategy.priority(child.pushes, child.hcost, config.weight));
+				return;
+			}
+			outbox[to][outCount[to]++] = child;
+			if (outCount[to] == BATCH_SIZE) {
+				flush(to);
+			}
+		}
+
+		private void flush() {
+			for (int to = 0; to < workers.length; to++) {
+				if (outCount[to] > 0) {
+					flush(to);
+				}
+			}
+			sinceFlush = 0;
+		}
+
+		private void flush(int to) {
+			workers[to].inbox.add(Arrays.copyOf(outbox[to], outCount[to]));
+			Arrays.fill(outbox[to], 0, outCount[to], null);
+			outCount[to] = 0;
+		}
+
+		private void receive() {
+			PushNode[] batch;
+			while ((batch = inbox.poll()) != null) {
+				for (PushNode n : batch) {
+					open.add(n, config.strategy.priority(n.pushes, n.hcost, config.weight));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Exact push costs for every pair of boxes on a level, solved with all other boxes removed.
+ * An entry is the fewest pushes that bring a box on each of the two cells onto two distinct targets,
+ * whatever region the player starts in, so it never overestimates.
+ *
+ * The table is built once per map and stored next to it as a compact binary file that is memory mapped at
+ * solve time; loading is only a header check and the operating system shares the pages between solver
+ * processes. Cells are indexed by live cell (see MapAnalysis) and costs are stored as one byte each.
+ *
+ * File layout: magic, version, level signature (walls and targets), board size, live cell count,
+ * the live cells, then liveCount * liveCount costs.
+ */
+public class PatternDatabase {
+	private static final int MAGIC = 0x53504442; // "SPDB"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+	// costs are capped below this value, which marks pairs that can never both reach targets
+	private static final int NO_COST = 0xFF;
+
+	private final int[] liveIndex;
+	private final int liveCount;
+	private final ByteBuffer costs;
+	private final int costOffset;
+
+	private PatternDatabase(int[] liveIndex, int liveCount, ByteBuffer costs, int costOffset) {
+		this.liveIndex = liveIndex;
+		this.liveCount = liveCount;
+		this.costs = costs;
+		this.costOffset = costOffset;
+	}
+
+	/* Fewest pushes to put boxes on both cells onto targets, or MapAnalysis.UNREACHABLE */
+	public int cost(int cellA, int cellB) {
+		int a = liveIndex[cellA], b = liveIndex[cellB];
+		if (a < 0 || b < 0) {
+			return MapAnalysis.UNREACHABLE;
+		}
+		int cost = costs.get(costOffset + a * liveCount + b) & 0xFF;
+		return cost == NO_COST ? MapAnalysis.UNREACHABLE : cost;
+	}
+
+	/* Solves every pair of box cells by pulling pairs of boxes backwards from all pairs of targets */
+	public static PatternDatabase build(MapAnalysis analysis) {
+		Board board = analysis.getBoard();
+		int[] liveIndex = new int[board.size];
+		int[] liveCells = new int[board.size];
+		int liveCount = 0;
+		for (int cell = 0; cell < board.size; cell++) {
+			liveIndex[cell] = -1;
+			if (!board.wall[cell] && !analysis.isDead(cell)) {
+				liveIndex[cell] = liveCount;
+				liveCells[liveCount++] = cell;
+			}
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * liveCount + liveCount * liveCount);
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putLong(signature(board)).putInt(board.size).putInt(liveCount);
+		for (int i = 0; i < liveCount; i++) {
+			buffer.putInt(liveCells[i]);
+		}
+		int costOffset = buffer.position();
+		for (int i = 0; i < liveCount * liveCount; i++) {
+			buffer.put((byte) NO_COST);
+		}
+
+		PatternDatabase database = new PatternDatabase(liveIndex, liveCount, buffer, costOffset);
+		database.solvePairs(board);
+		return database;
+	}
+
+	// breadth-first pulls over two-box states; the first time a pair of cells appears is its cost
+	private void solvePairs(Board board) {
+		Reach reach = new Reach(board);
+		StateTable seen = new StateTable(2);
+		int[] pair = new int[2];
+		// queued states: first box, second box and the player's cell
+		int[] queue = new int[1024];
+		int head = 0, tail = 0;
+
+		int[] targets = board.targets;
+		for (int i = 0; i < targets.length; i++) {
+			for (int j = i + 1; j < targets.length; j++) {
+				pair[0] = targets[i];
+				pair[1] = targets[j];
+				boolean[] covered = new boolean[board.size];
+				for (int cell = 0; cell < board.size; cell++) {
+					if (board.wall[cell] || cell == pair[0] || cell == pair[1] || covered[cell]) {
+						continue;
+					}
+					int region = reach.fill(cell, pair);
+					for (int c = 0; c < board.size; c++) {
+						covered[c] |= reach.reached(c);
+					}
+					if (seen.get(region, pair, hash(region, pair)) < 0) {
+						seen.put(region, pair, hash(region, pair), 0);
+						queue = ensure(queue, tail + 3);
+						queue[tail++] = pair[0];
+						queue[tail++] = pair[1];
+						queue[tail++] = cell;
+					}
+				}
+			}
+		}
+
+		int[] pulls = new int[2 * 4 * 3];
+		while (head < tail) {
+			pair[0] = queue[head++];
+			pair[1] = queue[head++];
+			int region = reach.fill(queue[head++], pair);
+			int cost = seen.get(region, pair, hash(region, pair));
+			record(pair[0], pair[1], cost);
+
+			// collect the pulls first, since filling the pulled states reuses the flood fill
+			int count = 0;
+			for (int i = 0; i < 2; i++) {
+				for (int dir = 0; dir < 4; dir++) {
+					int stand = board.next(pair[i], dir);
+					int back = stand < 0 ? -1 : board.next(stand, dir);
+					if (back >= 0 && reach.reached(stand) && reach.reached(back)) {
+						pulls[count++] = i;
+						pulls[count++] = stand;
+						pulls[count++] = back;
+					}
+				}
+			}
+
+			for (int k = 0; k < count; k += 3) {
+				int[] pulled = Board.moveBox(pair, pulls[k], pulls[k + 1]);
+				int pulledRegion = reach.fill(pulls[k + 2], pulled);
+				long hash = hash(pulledRegion, pulled);
+				if (seen.get(pulledRegion, pulled, hash) < 0) {
+					seen.put(pulledRegion, pulled, hash, cost + 1);
+					queue = ensure(queue, tail + 3);
+					queue[tail++] = pulled[0];
+					queue[tail++] = pulled[1];
+					queue[tail++] = pulls[k + 2];
+				}
+			}
+
+			// reclaim the consumed part of the queue now and then
+			if (head > 1 << 20) {
+				queue = Arrays.copyOfRange(queue, head, Math.max(tail, head + 1024));
+				tail -= head;
+				head = 0;
+			}
+		}
+	}
+
+	private void record(int cellA, int cellB, int cost) {
+		int a = liveIndex[cellA], b = liveIndex[cellB];
+		if (a < 0 || b < 0) {
+			return;
+		}
+		int capped = Math.min(cost, NO_COST - 1);
+		if ((costs.get(costOffset + a * liveCount + b) & 0xFF) > capped) {
+			costs.put(costOffset + a * liveCount + b, (byte) capped);
+			costs.put(costOffset + b * liveCount + a, (byte) capped);
+		}
+	}
+
+	private static long hash(int region, int[] pair) {
+		return ((long) region * 0x9E3779B97F4A7C15L) ^ ((long) pair[0] << 32 | pair[1]) * 0xC2B2AE3D27D4EB4FL;
+	}
+
+	private static int[] ensure(int[] queue, int length) {
+		return length <= queue.length ? queue : Arrays.copyOf(queue, Math.max(length, queue.length * 2));
+	}
+
+	/* Writes the table to a file so later solves can map it */
+	public void write(Path file) throws IOException {
+		ByteBuffer source = costs.duplicate();
+		source.clear();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (source.hasRemaining()) {
+				channel.write(source);
+			}
+		}
+	}
+
+	/* Maps a table written by write, or returns null when it was built for a different level */
+	public static PatternDatabase open(Path file, Board board) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+				|| buffer.getLong(8) != signature(board) || buffer.getInt(16) != board.size) {
+			return null;
+		}
+		int liveCount = buffer.getInt(20);
+		int costOffset = HEADER_BYTES + 4 * liveCount;
+		if (buffer.capacity() != costOffset + liveCount * liveCount) {
+			return null;
+		}
+
+		int[] liveIndex = new int[board.size];
+		Arrays.fill(liveIndex, -1);
+		for (int i = 0; i < liveCount; i++) {
+			liveIndex[buffer.getInt(HEADER_BYTES + 4 * i)] = i;
+		}
+		return new PatternDatabase(liveIndex, liveCount, buffer, costOffset);
+	}
+
+	// identifies the walls and targets the table was built for
+	private static long signature(Board board) {
+		long hash = 0xCBF29CE484222325L;
+		hash = (hash ^ board.rows) * 0x100000001B3L;
+		hash = (hash ^ board.cols) * 0x100000001B3L;
+		for (int cell = 0; cell < board.size; cell++) {
+			int kind = board.wall[cell] ? 1 : board.target[cell] ? 2 : 0;
+			hash = (hash ^ kind) * 0x100000001B3L;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,80 @@
+package solver;
+
+/*
+ * Strengthens another lower bound with the pair costs of a PatternDatabase.
+ * Boxes are charged their nearest-target distance, and disjoint pairs whose joint cost exceeds the sum of
+ * their two distances add the difference; the pairs are picked greedily by largest gain. The result is a
+ * sum over disjoint groups of boxes, so it stays admissible, and the larger of it and the base bound is used.
+ */
+public class PatternHeuristic implements Heuristic {
+	private final Heuristic base;
+	private final PatternDatabase patterns;
+	private final int[][] distance;
+	private final int[] nearest;
+	private final boolean[] paired;
+	private final int[] gain;
+
+	public PatternHeuristic(Heuristic base, PatternDatabase patterns, MapAnalysis analysis) {
+		this.base = base;
+		this.patterns = patterns;
+		this.distance = analysis.getPushDistances();
+		int boxes = analysis.getTargetCount();
+		this.nearest = new int[boxes];
+		this.paired = new boolean[boxes];
+		this.gain = new int[boxes * boxes];
+	}
+
+	@Override
+	public int estimate(int player, int[] boxes) {
+		int bound = base.estimate(player, boxes);
+		if (bound == UNSOLVABLE) {
+			return UNSOLVABLE;
+		}
+
+		int n = boxes.length, total = 0;
+		for (int i = 0; i < n; i++) {
+			int best = MapAnalysis.UNREACHABLE;
+			for (int[] toTarget : distance) {
+				best = Math.min(best, toTarget[boxes[i]]);
+			}
+			if (best == MapAnalysis.UNREACHABLE) {
+				return UNSOLVABLE;
+			}
+			nearest[i] = best;
+			paired[i] = false;
+			total += best;
+		}
+
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				int cost = patterns.cost(boxes[i], boxes[j]);
+				// two boxes that cannot both reach targets make the whole state unsolvable
+				if (cost == MapAnalysis.UNREACHABLE) {
+					return UNSOLVABLE;
+				}
+				gain[i * n + j] = cost - nearest[i] - nearest[j];
+			}
+		}
+
+		// repeatedly take the unpaired pair with the largest gain
+		while (true) {
+			int bestGain = 0, bestI = -1, bestJ = -1;
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n && !paired[i]; j++) {
+					if (!paired[j] && gain[i * n + j] > bestGain) {
+						bestGain = gain[i * n + j];
+						bestI = i;
+						bestJ = j;
+					}
+				}
+			}
+			if (bestI < 0) {
+				break;
+			}
+			paired[bestI] = paired[bestJ] = true;
+			total += bestGain;
+		}
+
+		return Math.max(bound, total);
+	}
+}
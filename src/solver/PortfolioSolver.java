@@ -0,0 +1,242 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Races several configurations on one level, each in its own SokoBot on its own thread, and takes the
+ * first solution that actually solves the level. The rest are cancelled as soon as it arrives, and their
+ * threads are waited for and the bots dropped, so their tables can be collected before the caller goes on.
+ *
+ * Which configuration won is kept in the stats and, when a log file is given, appended to it together
+ * with the level's digest (see SolutionCache), so wins can be tallied over many runs to pick better defaults.
+ */
+public class PortfolioSolver {
+	private static final String LOG_HEADER = "level,config,millis,moves";
+
+	private final List<SolverConfig> configs;
+	private final Path log;
+	// the members of the running race; emptied once it is over
+	private final List<SokoBot> bots = new ArrayList<>();
+	private volatile boolean cancelled;
+	private volatile SearchMetrics metrics;
+	private SolveStats stats = new SolveStats();
+
+	public PortfolioSolver(List<SolverConfig> configs, Path log) {
+		this.configs = configs;
+		this.log = log;
+	}
+
+	/*
+	 * The configurations raced by default around the given one: it, greedy and weighted push searches that
+	 * solve easy levels at once, an optimal push search with only the cheap deadlock checks, and a
+	 * bidirectional search. Duplicates of the given configuration are left out. The members run side by side,
+	 * so they split the given table capacity and node limit between them and together use what one solve would.
+	 */
+	public static List<SolverConfig> lineup(SolverConfig base) {
+		List<SolverConfig> configs = new ArrayList<>();
+		configs.add(member(base, base.mode, base.strategy, base.heuristic, base.weight));
+		configs.add(member(base, SearchMode.PUSHES, SearchStrategy.GREEDY, HeuristicMode.MATCHING, base.weight));
+		configs.add(member(base, SearchMode.PUSHES, SearchStrategy.WEIGHTED_ASTAR, HeuristicMode.MATCHING, SolverConfig.DEFAULT_WEIGHT));
+		SolverConfig cheap = member(base, SearchMode.PUSHES, SearchStrategy.ASTAR, HeuristicMode.NEAREST, base.weight);
+		cheap.pruning = EnumSet.of(PruneRule.DEAD_SQUARE, PruneRule.BLOCK_2X2);
+		configs.add(cheap);
+		configs.add(member(base, SearchMode.BIDIRECTIONAL, SearchStrategy.ASTAR, HeuristicMode.MATCHING, base.weight));
+
+		Set<String> seen = new HashSet<>();
+		configs.removeIf(config -> !seen.add(config.toString() + config.pruning));
+		for (SolverConfig config : configs) {
+			config.tableCapacity = Math.max(1, base.tableCapacity / configs.size());
+			if (base.nodeLimit > 0) {
+				config.nodeLimit = Math.max(1, base.nodeLimit / configs.size());
+			}
+		}
+		return configs;
+	}
+
+	// a copy of the base that searches on its own; the portfolio answers from the cache and writes the log itself
+	private static SolverConfig member(SolverConfig base, SearchMode mode, SearchStrategy strategy, HeuristicMode heuristic,
+			double weight) {
+		SolverConfig config = base.copy();
+		config.mode = mode;
+		config.strategy = strategy;
+		config.heuristic = heuristic;
+		config.weight = weight;
+		config.portfolio = false;
+		config.portfolioLog = null;
+		config.solutionCache = null;
+		config.anytime = false;
+		return config;
+	}
+
+	/* Runs every configuration on the level and returns the first valid solution, or null when none finds one */
+	public String solve(int width, int height, char[][] mapData, char[][] itemsData) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService threads = Executors.newFixedThreadPool(configs.size(), task -> {
+			Thread thread = new Thread(task, "PortfolioSolver-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompletionService<Integer> finished = new ExecutorCompletionService<>(threads);
+		String[] solutions = new String[configs.size()];
+		long start = System.nanoTime();
+
+		synchronized (bots) {
+			for (int i = 0; i < configs.size(); i++) {
+				SokoBot bot = new SokoBot(configs.get(i));
+				bots.add(bot);
+				if (cancelled) {
+					bot.cancel();
+				}
+				int index = i;
+				// every bot gets its own copy of the level
+				char[][] map = copy(mapData), items = copy(itemsData);
+				finished.submit(() -> {
+					solutions[index] = bot.solveSokobanPuzzle(width, height, map, items);
+					return index;
+				});
+			}
+			metrics = bots.get(0).getMetrics();
+		}
+
+		String solution = null;
+		int winner = -1;
+		try {
+			for (int left = configs.size(); left > 0 && solution == null; left--) {
+				int index;
+				try {
+					index = finished.take().get();
+				} catch (ExecutionException ex) {
+					System.out.println("Portfolio member failed: " + ex.getCause());
+					continue;
+				}
+				String candidate = solutions[index];
+				if (candidate != null && SolutionCache.solves(width, height, mapData, itemsData, candidate)) {
+					solution = candidate;
+					winner = index;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stopAll(threads);
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		synchronized (bots) {
+			if (winner >= 0) {
+				SokoBot bot = bots.get(winner);
+				stats = bot.getStats();
+				stats.winner = configs.get(winner).toString();
+				metrics = bot.getMetrics();
+				System.out.println("Portfolio winner: " + stats.winner + " in " + millis + "ms");
+				record(width, height, mapData, itemsData, stats.winner, millis, solution);
+			} else {
+				// nobody won, so the work of every member is reported; they ran at once, so their tables add up too
+				for (SokoBot bot : bots) {
+					SolveStats member = bot.getStats();
+					stats.expanded += member.expanded;
+					stats.generated += member.generated;
+					stats.tableEntries += member.tableEntries;
+					stats.tableBytes += member.tableBytes;
+					stats.tableOffHeap |= member.tableOffHeap;
+					stats.stopped |= member.stopped;
+				}
+			}
+			bots.clear();
+		}
+		return solution;
+	}
+
+	// cancels every bot and waits until all of their threads are done
+	private void stopAll(ExecutorService threads) {
+		synchronized (bots) {
+			for (SokoBot bot : bots) {
+				bot.cancel();
+			}
+		}
+		threads.shutdown();
+		try {
+			while (!threads.awaitTermination(1, TimeUnit.SECONDS)) {
+				// keep waiting; cancelled searches stop at their next budget check
+			}
+		} catch (InterruptedException ex) {
+			threads.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static char[][] copy(char[][] grid) {
+		char[][] copy = new char[grid.length][];
+		for (int r = 0; r < grid.length; r++) {
+			copy[r] = grid[r].clone();
+		}
+		return copy;
+	}
+
+	// appends the win to the log, writing the header first when the log is new
+	private void record(int width, int height, char[][] mapData, char[][] itemsData, String winner, long millis, String solution) {
+		if (log == null) {
+			return;
+		}
+		String line = SolutionCache.digest(width, height, mapData, itemsData) + "," + winner + "," + millis + "," + solution.length() + "\n";
+		// solves running side by side may finish at the same time
+		synchronized (PortfolioSolver.class) {
+			try {
+				if (!Files.exists(log)) {
+					line = LOG_HEADER + "\n" + line;
+				}
+				Files.writeString(log, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			} catch (IOException ex) {
+				System.out.println("Could not write to the portfolio log " + log + ": " + ex.getMessage());
+			}
+		}
+	}
+
+	/* Stops every member at its next check; solve then returns null unless one has already won */
+	public void cancel() {
+		cancelled = true;
+		synchronized (bots) {
+			for (SokoBot bot : bots) {
+				bot.cancel();
+			}
+		}
+	}
+
+	/* The best solution any member has found so far, for a race that is still running */
+	public String getBestSolution() {
+		synchronized (bots) {
+			for (SokoBot bot : bots) {
+				String solution = bot.getBestSolution();
+				if (solution != null) {
+					return solution;
+				}
+			}
+		}
+		return null;
+	}
+
+	/* Live counters of the first configuration while the race runs, and of the winner once it is over; null before it starts */
+	public SearchMetrics getMetrics() {
+		return metrics;
+	}
+
+	/* The winner's counters, with its configuration in getWinner */
+	public SolveStats getStats() {
+		return stats;
+	}
+}
@@ -0,0 +1,15 @@
+package solver;
+
+/* Reasons a pushed box's state can be discarded without searching below it */
+public enum PruneRule {
+	// the box was pushed onto a cell from which it can never reach a target
+	DEAD_SQUARE,
+	// the box completes a 2x2 block of walls and boxes that is not all on targets
+	BLOCK_2X2,
+	// the box can no longer move along either axis, and it or a box holding it is off target
+	FREEZE,
+	// the boxes cannot all be assigned to distinct targets they can still reach
+	NO_MATCHING,
+	// the boxes fence off an area the player can never get into or a box out of (see Corrals)
+	PI_CORRAL
+}
@@ -0,0 +1,244 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Successor generation for the push-level searches: normalizes a node's player region, generates the
+ * pushes that do not cause a deadlock, and expands a chain of pushes back into a full move string.
+ * With macros, a push into a tunnel or onto the goal room's entrance carries on as one child (see Macros),
+ * so a child may be several pushes of the same box past its parent.
+ * Holds flood-fill and heuristic buffers, so every searching thread needs its own expander.
+ */
+public class PushExpander {
+	private final Board board;
+	private final Zobrist zobrist;
+	private final Heuristic heuristic;
+	private final DeadlockDetector deadlocks;
+	private final Reach reach;
+	private final long targetHash;
+	// null to push one cell at a time
+	private final Macros macros;
+	// null to push every box the player can reach
+	private final Corrals corrals;
+	private final MapAnalysis analysis;
+	// where the last slide left the player, and how many pushes it took past the first
+	private int slidePlayer, slidePushes;
+	// children of the node being expanded, for the callers that keep PushNode objects
+	private Successors scratch;
+
+	public PushExpander(MapAnalysis analysis, Zobrist zobrist, Heuristic heuristic, DeadlockDetector deadlocks) {
+		this(analysis, zobrist, heuristic, deadlocks, null);
+	}
+
+	public PushExpander(MapAnalysis analysis, Zobrist zobrist, Heuristic heuristic, DeadlockDetector deadlocks, Macros macros) {
+		this.analysis = analysis;
+		this.macros = macros;
+		this.board = analysis.getBoard();
+		this.zobrist = zobrist;
+		this.heuristic = heuristic;
+		this.deadlocks = deadlocks;
+		this.reach = new Reach(board);
+		this.corrals = deadlocks.isEnabled(PruneRule.PI_CORRAL) ? new Corrals(analysis) : null;
+		this.targetHash = zobrist.hashBoxes(board.targets);
+	}
+
+	/* The node for the level's initial position, or null when the heuristic already proves it unsolvable */
+	PushNode root() {
+		int hcost = heuristic.estimate(board.player, board.boxes);
+		if (hcost == Heuristic.UNSOLVABLE) {
+			return null;
+		}
+		return new PushNode(board.player, board.boxes, zobrist.hashBoxes(board.boxes), 0, -1, -1, null, hcost);
+	}
+
+	boolean isGoal(PushNode n) {
+		return isGoal(n.boxHash, n.boxes);
+	}
+
+	boolean isGoal(long boxHash, int[] boxes) {
+		return boxHash == targetHash && Arrays.equals(boxes, board.targets);
+	}
+
+	/*
+	 * Flood fills the node's player region and returns its smallest cell, which stands in for the player
+	 * in the node's key. Must be called before expand on the same node.
+	 */
+	int region(PushNode n) {
+		return region(n.player, n.boxes);
+	}
+
+	int region(int player, int[] boxes) {
+		return reach.fill(player, boxes);
+	}
+
+	/* Full state hash of a node whose player region has been normalized */
+	long hash(PushNode n, int region) {
+		return zobrist.withPlayer(n.boxHash, region);
+	}
+
+	/*
+	 * Writes a child into out for every box the player can reach and push one cell without causing
+	 * a deadlock, and returns how many were written. out needs room for four children per box.
+	 */
+	int expand(PushNode n, PushNode[] out) {
+		if (scratch == null) {
+			scratch = newSuccessors();
+		}
+		expand(n.boxes, n.boxHash, scratch);
+		for (int i = 0; i < scratch.count; i++) {
+			out[i] = new PushNode(scratch.player[i], scratch.boxes[i].clone(), scratch.boxHash[i], n.pushes + scratch.pushes[i],
+					scratch.boxFrom[i], scratch.dir[i], n, scratch.hcost[i]);
+		}
+		return scratch.count;
+	}
+
+	/*
+	 * Like expand, but writes the children of the state whose region was filled last into reusable rows
+	 * instead of allocating nodes. A push is tested with a few loads from the neighbour table and the fill.
+	 * When the boxes fence off an unsolved PI-corral, only the boxes on its fence are pushed.
+	 */
+	void expand(int[] boxes, long boxHash, Successors out) {
+		int count = 0;
+		boolean barrierOnly = false;
+		if (corrals != null) {
+			int corral = corrals.find(boxes, reach);
+			if (corral == Corrals.DEADLOCK) {
+				deadlocks.prune(PruneRule.PI_CORRAL);
+				out.count = 0;
+				return;
+			}
+			barrierOnly = corral == Corrals.RESTRICT;
+		}
+
+		for (int i = 0; i < boxes.length; i++) {
+			int box = boxes[i];
+			if (barrierOnly && !corrals.isBarrier(box, reach)) {
+				continue;
+			}
+			for (int dir = 0; dir < 4; dir++) {
+				int behind = board.next[box * 4 + Board.opposite(dir)];
+				int to = board.next[box * 4 + dir];
+				if (behind < 0 || to < 0 || !reach.reached(behind) || reach.occupied(to)) {
+					continue;
+				}
+
+				// after a single push the player stands where the box was
+				int player = box, pushes = 1;
+				if (macros != null) {
+					to = slide(boxes, box, to, dir);
+					player = slidePlayer;
+					pushes += slidePushes;
+				}
+
+				int[] moved = Board.moveBox(boxes, i, to, out.boxes[count]);
+				if (deadlocks.check(moved, to) != null) {
+					continue;
+				}
+				int hcost = heuristic.estimate(player, moved);
+				if (hcost == Heuristic.UNSOLVABLE) {
+					deadlocks.prune(PruneRule.NO_MATCHING);
+					continue;
+				}
+
+				out.player[count] = player;
+				out.boxHash[count] = zobrist.moveBox(boxHash, box, to);
+				out.pushes[count] = pushes;
+				out.boxFrom[count] = box;
+				out.dir[count] = dir;
+				out.hcost[count] = hcost;
+				count++;
+			}
+		}
+
+		out.count = count;
+	}
+
+	/* A buffer with room for every child of a node */
+	Successors newSuccessors() {
+		return new Successors(maxChildren(), board.boxes.length);
+	}
+
+	/*
+	 * Follows a box just pushed from one cell onto the next through any tunnel it entered and, when it
+	 * lands on the goal room's entrance, on to its target there. Returns the box's final cell and leaves
+	 * the player's cell and the extra pushes in slidePlayer and slidePushes. Relies on the last fill.
+	 */
+	private int slide(int[] boxes, int from, int to, int dir) {
+		int cell = to, extra = 0;
+		slidePlayer = from;
+		while (true) {
+			if (cell == macros.getEntrance() && dir == macros.getEntryDir()) {
+				int filled = macros.filled(boxes);
+				if (filled >= 0) {
+					slidePlayer = macros.player(filled);
+					slidePushes = extra + macros.pushes(filled);
+					return macros.target(filled);
+				}
+			}
+			int ahead = board.next(cell, dir);
+			if (!macros.isTunnel(cell, dir) || reach.occupied(ahead) || analysis.isDead(ahead)) {
+				break;
+			}
+			slidePlayer = cell;
+			cell = ahead;
+			extra++;
+		}
+		slidePushes = extra;
+		return cell;
+	}
+
+	/* Room needed in the buffer passed to expand */
+	int maxChildren() {
+		return board.boxes.length * 4;
+	}
+
+	/* Rebuilds the full move string, walking the player to each push from where the previous one left it */
+	String getMoves(PushNode goal) {
+		List<PushNode> path = new ArrayList<>();
+		for (PushNode n = goal; n != null; n = n.parent) {
+			path.add(n);
+		}
+
+		StringBuilder moves = new StringBuilder();
+		for (int i = path.size() - 1; i > 0; i--) {
+			PushNode before = path.get(i);
+			PushNode push = path.get(i - 1);
+			reach.fill(before.player, before.boxes);
+			reach.appendPath(board.next(push.boxFrom, Board.opposite(push.dir)), moves);
+			moves.append(Board.MOVES[push.dir]);
+			appendMacro(before, push, moves);
+		}
+
+		return moves.toString();
+	}
+
+	// replays the pushes a macro child made after its first one: on through a tunnel, then into the goal room
+	private void appendMacro(PushNode before, PushNode push, StringBuilder moves) {
+		int to = movedTo(before.boxes, push.boxes);
+		int cell = board.next(push.boxFrom, push.dir);
+		while (cell != to) {
+			if (cell == macros.getEntrance() && push.dir == macros.getEntryDir()) {
+				moves.append(macros.path(macros.filled(before.boxes)));
+				return;
+			}
+			moves.append(Board.MOVES[push.dir]);
+			cell = board.next(cell, push.dir);
+		}
+	}
+
+	// the cell the pushed box ended on: the one taken after the push and not before it
+	private static int movedTo(int[] before, int[] after) {
+		for (int cell : after) {
+			if (Arrays.binarySearch(before, cell) < 0) {
+				return cell;
+			}
+		}
+		return -1;
+	}
+
+	DeadlockDetector getDeadlocks() {
+		return deadlocks;
+	}
+}
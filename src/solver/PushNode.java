@@ -0,0 +1,25 @@
+package solver;
+
+/* A box configuration reached by a push; player is the cell the player stands on right after it */
+class PushNode {
+	final int player;
+	final int[] boxes;
+	final long boxHash;
+	final int pushes;
+	// the pushed box's cell before the push and the push direction, -1 for the initial node
+	final int boxFrom;
+	final int dir;
+	final PushNode parent;
+	final int hcost;
+
+	PushNode(int player, int[] boxes, long boxHash, int pushes, int boxFrom, int dir, PushNode parent, int hcost) {
+		this.player = player;
+		this.boxes = boxes;
+		this.boxHash = boxHash;
+		this.pushes = pushes;
+		this.boxFrom = boxFrom;
+		this.dir = dir;
+		this.parent = parent;
+		this.hcost = hcost;
+	}
+}
@@ -0,0 +1,150 @@
+package solver;
+
+/*
+ * Search over box pushes only. A node is a box configuration plus the region the player can walk to,
+ * identified by its smallest cell, so states that differ only by where the player stands merge.
+ * Nodes are kept in a NodeArena, where a node's move is the pushed box's cell * 4 + the push direction.
+ * The walking between pushes is recovered when the solution is rebuilt.
+ */
+public class PushSearch {
+	private final StateStore minPushes;
+	private final SolverConfig config;
+	private final Zobrist zobrist;
+	private final PushExpander expander;
+	private final NodeArena nodes;
+	private final int boxCount;
+
+	private SearchBudget budget = new SearchBudget(0, 0);
+	private SearchMetrics.Probe probe;
+	// nodes that cannot finish in fewer pushes than this are dropped; used to improve on an earlier solution
+	private int costBound = Integer.MAX_VALUE;
+	private int solutionPushes = -1;
+	private long expanded;
+
+	public PushSearch(MapAnalysis analysis, Zobrist zobrist, StateStore minPushes, SolverConfig config, Heuristic heuristic,
+			DeadlockDetector deadlocks) {
+		this.minPushes = minPushes;
+		this.config = config;
+		this.zobrist = zobrist;
+		this.expander = new PushExpander(analysis, zobrist, heuristic, deadlocks, config.macros ? new Macros(analysis) : null);
+		this.boxCount = analysis.getBoard().getBoxCount();
+		this.nodes = new NodeArena(boxCount);
+		this.probe = new SearchMetrics().probe(deadlocks, minPushes);
+	}
+
+	/* Searches for a sequence of pushes that puts every box on a target and returns it as a move string, or null */
+	public String solve() {
+		PushNode root = expander.root();
+		if (root == null) {
+			return null;
+		}
+
+		// nodes are read out of the arena into these and children written into reused rows, so expanding allocates nothing
+		IntBucketQueue queue = new IntBucketQueue();
+		Successors children = expander.newSuccessors();
+		int[] current = new int[root.boxes.length];
+		enqueue(queue, nodes.add(NodeArena.NO_PARENT, -1, 0, root.hcost, root.player, root.boxes, root.boxHash));
+
+		while (!queue.isEmpty()) {
+			if (budget.exhausted()) {
+				probe.publish(queue.size());
+				return null;
+			}
+			int index = queue.poll();
+			int player = nodes.getState(index, current);
+			int pushes = nodes.getCost(index);
+			long boxHash = nodes.getBoxHash(index);
+
+			if (expander.isGoal(boxHash, current)) {
+				System.out.println("Number of Pushes: " + pushes);
+				solutionPushes = pushes;
+				probe.publish(queue.size());
+				return expander.getMoves(toChain(index));
+			}
+
+			// the player can be anywhere in its region, so the region's smallest cell stands in for it
+			int region = expander.region(player, current);
+			long hash = zobrist.withPlayer(boxHash, region);
+			int best = minPushes.get(region, current, hash);
+			if (best >= 0 && pushes >= best) {
+				continue;
+			}
+			minPushes.put(region, current, hash, pushes);
+			expanded++;
+			probe.expanded(pushes, nodes.getEstimate(index), queue.size());
+
+			expander.expand(current, boxHash, children);
+			probe.generated(children.count);
+			for (int i = 0; i < children.count; i++) {
+				int cost = pushes + children.pushes[i];
+				if (cost + children.hcost[i] >= costBound) {
+					continue;
+				}
+				enqueue(queue, nodes.add(index, children.boxFrom[i] * 4 + children.dir[i], cost, children.hcost[i], children.player[i],
+						children.boxes[i], children.boxHash[i]));
+			}
+		}
+
+		probe.publish(0);
+		return null;
+	}
+
+	private void enqueue(IntBucketQueue queue, int index) {
+		queue.add(index, config.strategy.priority(nodes.getCost(index), nodes.getEstimate(index), config.weight));
+	}
+
+	// turns the arena rows from the root to the node into linked nodes for PushExpander.getMoves
+	private PushNode toChain(int index) {
+		// a macro child is several pushes past its parent, so the chain is collected by parent rather than by cost
+		int length = 0;
+		for (int i = index; i != NodeArena.NO_PARENT; i = nodes.getParent(i)) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int i = index; i != NodeArena.NO_PARENT; i = nodes.getParent(i)) {
+			path[--length] = i;
+		}
+
+		PushNode chain = null;
+		for (int i : path) {
+			int[] boxes = new int[boxCount];
+			int player = nodes.getState(i, boxes);
+			int move = nodes.getMove(i);
+			chain = new PushNode(player, boxes, 0, nodes.getCost(i), move < 0 ? -1 : move >> 2, move & 3, chain, nodes.getEstimate(i));
+		}
+		return chain;
+	}
+
+	/* Stops the search once the budget runs out or is cancelled; solve then returns null */
+	public void setBudget(SearchBudget budget) {
+		this.budget = budget;
+	}
+
+	/* Reports progress into the given metrics */
+	public void setMetrics(SearchMetrics metrics) {
+		this.probe = metrics.probe(expander.getDeadlocks(), minPushes);
+	}
+
+	/* Reports progress through a probe that outlives this search, so several searches over one table count once */
+	void setProbe(SearchMetrics.Probe probe) {
+		this.probe = probe;
+	}
+
+	/* Only looks for solutions with fewer pushes than the bound */
+	public void setCostBound(int costBound) {
+		this.costBound = costBound;
+	}
+
+	/* Pushes of the solution the last solve returned, or -1 */
+	public int getSolutionPushes() {
+		return solutionPushes;
+	}
+
+	public long getExpanded() {
+		return expanded;
+	}
+
+	public NodeArena getNodes() {
+		return nodes;
+	}
+}
@@ -0,0 +1,96 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Flood fill of the cells the player can walk to without pushing a box.
+ * Buffers are reused between fills by stamping cells instead of clearing arrays.
+ */
+public class Reach {
+	private final Board board;
+	private final int[] mark;
+	private final int[] boxMark;
+	private final int[] queue;
+	// direction the fill entered each reached cell from, for walking paths
+	private final byte[] via;
+	private int stamp;
+	private int origin;
+	private int count;
+
+	public Reach(Board board) {
+		this.board = board;
+		this.mark = new int[board.size];
+		this.boxMark = new int[board.size];
+		this.queue = new int[board.size];
+		this.via = new byte[board.size];
+	}
+
+	/* Fills from the player's cell around the given boxes and returns the smallest reachable cell */
+	public int fill(int player, int[] boxes) {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(mark, 0);
+			Arrays.fill(boxMark, 0);
+			stamp = 1;
+		}
+		for (int box : boxes) {
+			boxMark[box] = stamp;
+		}
+
+		int head = 0, tail = 0, min = player;
+		origin = player;
+		mark[player] = stamp;
+		queue[tail++] = player;
+
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int n = board.next[cell * 4 + dir];
+				if (n >= 0 && mark[n] != stamp && boxMark[n] != stamp) {
+					mark[n] = stamp;
+					via[n] = (byte) dir;
+					queue[tail++] = n;
+					if (n < min) {
+						min = n;
+					}
+				}
+			}
+		}
+
+		count = tail;
+		return min;
+	}
+
+	/* Whether the last fill reached the cell */
+	public boolean reached(int cell) {
+		return mark[cell] == stamp;
+	}
+
+	/* Whether the cell held a box during the last fill */
+	public boolean occupied(int cell) {
+		return boxMark[cell] == stamp;
+	}
+
+	/* The cell the last fill started from */
+	public int origin() {
+		return origin;
+	}
+
+	/* Number of cells reached by the last fill */
+	public int count() {
+		return count;
+	}
+
+	/* Appends the shortest walk from the last fill's starting cell to a reached cell */
+	public void appendPath(int to, StringBuilder moves) {
+		int start = moves.length();
+		for (int cell = to; cell != origin; cell = board.next(cell, Board.opposite(via[cell]))) {
+			moves.append(Board.MOVES[via[cell]]);
+		}
+		// the walk was collected from its end, so only the appended part is reversed
+		for (int i = start, j = moves.length() - 1; i < j; i++, j--) {
+			char t = moves.charAt(i);
+			moves.setCharAt(i, moves.charAt(j));
+			moves.setCharAt(j, t);
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package solver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Files of fixed-width records, read and written front to back through large buffers, and the external
+ * sort that orders them. A record starts with its key, a number of longs compared one after the other;
+ * the bytes after the key ride along. Sorting reads as many records as fit the memory it was given, sorts
+ * them in place and writes them out as a run, then merges the runs in a single pass, so every byte is
+ * read and written a few times in order and never looked up at random.
+ */
+final class RecordSorter {
+	// bytes moved per read or write of a file
+	static final int BUFFER_BYTES = 1 << 20;
+
+	private final int recordBytes;
+	private final int keyLongs;
+	private final Path directory;
+	// one run of records being sorted, and the order of its records
+	private final ByteBuffer run;
+	private final int[] order, scratch;
+
+	RecordSorter(int recordBytes, int keyLongs, Path directory, long memoryBytes) {
+		this.recordBytes = recordBytes;
+		this.keyLongs = keyLongs;
+		this.directory = directory;
+		// each record in a run also takes two ints of ordering
+		int records = (int) Math.max(1024, Math.min(memoryBytes / (recordBytes + 2 * Integer.BYTES), Integer.MAX_VALUE / recordBytes));
+		this.run = ByteBuffer.allocate(records * recordBytes);
+		this.order = new int[records];
+		this.scratch = new int[records];
+	}
+
+	/* A new empty file in the sorter's directory */
+	Path newFile(String prefix) throws IOException {
+		return Files.createTempFile(directory, prefix, ".bin");
+	}
+
+	/* Sorts the records of the file into runs that each fit in memory, deleting the file; returns the runs */
+	List<Path> sortRuns(Path file) throws IOException {
+		List<Path> runs = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+			while (true) {
+				run.clear();
+				while (run.hasRemaining() && channel.read(run) >= 0) {
+					// keep reading until the run is full or the file ends
+				}
+				int count = run.position() / recordBytes;
+				if (count == 0) {
+					return runs;
+				}
+				for (int i = 0; i < count; i++) {
+					order[i] = i * recordBytes;
+				}
+				sort(0, count);
+
+				Path out = newFile("run-");
+				try (Writer writer = new Writer(out)) {
+					for (int i = 0; i < count; i++) {
+						writer.write(run, order[i], recordBytes);
+					}
+				}
+				runs.add(out);
+				if (count * recordBytes < run.capacity()) {
+					return runs;
+				}
+			}
+		}
+	}
+
+	// merge sort of the record offsets in order[from, to), comparing the records in the run buffer
+	private void sort(int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(from, middle);
+		sort(middle, to);
+		if (compare(run, order[middle - 1], run, order[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, scratch, from, to - from);
+		int i = from, j = middle;
+		for (int k = from; k < to; k++) {
+			if (j == to || i < middle && compare(run, scratch[i], run, scratch[j]) <= 0) {
+				order[k] = scratch[i++];
+			} else {
+				order[k] = scratch[j++];
+			}
+		}
+	}
+
+	/* Compares the keys of two records; a key-only record compares the same as a full one */
+	int compare(ByteBuffer a, int offsetA, ByteBuffer b, int offsetB) {
+		for (int w = 0; w < keyLongs; w++) {
+			int c = Long.compare(a.getLong(offsetA + w * Long.BYTES), b.getLong(offsetB + w * Long.BYTES));
+			if (c != 0) {
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	int compare(Reader a, Reader b) {
+		return compare(a.buffer(), a.offset(), b.buffer(), b.offset());
+	}
+
+	/* Reads the runs' records in key order, deleting each run once it has been read to the end */
+	Merge merge(List<Path> runs) throws IOException {
+		return new Merge(runs);
+	}
+
+	/* Streams the records of several sorted runs as one sorted sequence; equal keys come out next to each other */
+	final class Merge implements Closeable {
+		private final PriorityQueue<Reader> heads = new PriorityQueue<>(RecordSorter.this::compare);
+		private final List<Reader> readers = new ArrayList<>();
+		private Reader current;
+
+		private Merge(List<Path> runs) throws IOException {
+			try {
+				for (Path path : runs) {
+					Reader reader = new Reader(path, recordBytes, true);
+					readers.add(reader);
+					if (reader.next()) {
+						heads.add(reader);
+					}
+				}
+			} catch (IOException ex) {
+				close();
+				throw ex;
+			}
+		}
+
+		/* Moves to the next record in key order; returns false when every run is used up */
+		boolean next() throws IOException {
+			if (current != null && current.next()) {
+				heads.add(current);
+			}
+			current = heads.poll();
+			return current != null;
+		}
+
+		ByteBuffer buffer() {
+			return current.buffer();
+		}
+
+		int offset() {
+			return current.offset();
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (Reader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/* Appends records to a new file through a large buffer */
+	static final class Writer implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		private long count;
+
+		Writer(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		/* Appends length bytes of the source starting at offset; the source's position is left alone */
+		void write(ByteBuffer source, int offset, int length) throws IOException {
+			if (buffer.remaining() < length) {
+				flush();
+			}
+			buffer.put(buffer.position(), source, offset, length);
+			buffer.position(buffer.position() + length);
+			count++;
+		}
+
+		/* Records written so far */
+		long count() {
+			return count;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+			channel.close();
+		}
+	}
+
+	/* Reads a file's records in order through a large buffer */
+	static final class Reader implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final int recordBytes;
+		private int offset;
+
+		Reader(Path file, int recordBytes, boolean deleteOnClose) throws IOException {
+			this.channel = deleteOnClose ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)
+					: FileChannel.open(file, StandardOpenOption.READ);
+			this.recordBytes = recordBytes;
+			// whole records only, so a record never straddles two reads
+			this.buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_BYTES / recordBytes) * recordBytes);
+			this.buffer.limit(0);
+			this.offset = -recordBytes;
+		}
+
+		/* Moves to the next record; returns false at the end of the file */
+		boolean next() throws IOException {
+			offset += recordBytes;
+			if (offset < buffer.limit()) {
+				return true;
+			}
+			buffer.clear();
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// fill the buffer unless the file ends first
+			}
+			buffer.flip();
+			offset = 0;
+			return buffer.limit() >= recordBytes;
+		}
+
+		/* The buffer holding the current record, which starts at offset() */
+		ByteBuffer buffer() {
+			return buffer;
+		}
+
+		int offset() {
+			return offset;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
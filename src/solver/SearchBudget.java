@@ -0,0 +1,77 @@
+package solver;
+
+/*
+ * Limits on how long a solve may run: a wall-clock deadline, a cap on expanded nodes and a flag another
+ * thread can set to cancel. Searches poll it cooperatively from their main loop; the clock is only read
+ * every few hundred expansions so the check stays off the hot path.
+ */
+public class SearchBudget {
+	private static final int CLOCK_INTERVAL = 256;
+
+	private final long timeLimitNanos;
+	private final long nodeLimit;
+	private volatile long deadline = Long.MAX_VALUE;
+	private volatile boolean cancelled;
+	private volatile boolean exhausted;
+	private long nodes;
+	private int sinceClock;
+
+	/* A limit of 0 means no limit */
+	public SearchBudget(long timeLimitMillis, long nodeLimit) {
+		this.timeLimitNanos = timeLimitMillis > 0 ? timeLimitMillis * 1_000_000L : Long.MAX_VALUE;
+		this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+	}
+
+	/* Starts the clock; the time limit counts from here */
+	public void start() {
+		long now = System.nanoTime();
+		deadline = timeLimitNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + timeLimitNanos;
+	}
+
+	/* Asks the search to stop at its next check; safe to call from any thread */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/* Counts one expansion and tells whether the search has to stop; for the single searching thread only */
+	public boolean exhausted() {
+		if (exhausted) {
+			return true;
+		}
+		if (++nodes > nodeLimit) {
+			exhausted = true;
+		} else if (++sinceClock >= CLOCK_INTERVAL) {
+			sinceClock = 0;
+			exhausted = expired();
+		}
+		return exhausted || cancelled;
+	}
+
+	/* Marks the budget as run out, for searches that check the limits themselves; safe from any thread */
+	public void exhaust() {
+		exhausted = true;
+	}
+
+	/* Whether the search was cancelled or ran past its deadline, without counting an expansion; safe from any thread */
+	public boolean expired() {
+		return cancelled || exhausted || deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+	}
+
+	/* Whether a search stopped because of this budget rather than by running out of states */
+	public boolean isExhausted() {
+		return exhausted || cancelled;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public long getNodeLimit() {
+		return nodeLimit;
+	}
+
+	/* Nanoseconds left before the deadline, Long.MAX_VALUE without one */
+	public long remainingNanos() {
+		return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadline - System.nanoTime());
+	}
+}
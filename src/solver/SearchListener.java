@@ -0,0 +1,11 @@
+package solver;
+
+/* Receives progress from a running search; see SearchMetrics */
+public interface SearchListener {
+	/* Called from a searching thread a few times a second at most, so it must return quickly */
+	void progress(SearchSnapshot snapshot);
+
+	/* Called once when the solve ends, with or without a solution */
+	default void finished(SearchSnapshot snapshot) {
+	}
+}
@@ -0,0 +1,167 @@
+package solver;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Live counters of a solve that other threads can read while the search runs. Every searching thread
+ * counts into its own Probe with plain fields and only folds the counts into the shared striped adders
+ * every few thousand expansions, so the hot loop never touches shared memory. Gauges such as the open
+ * list size are folded in as the change since the last fold, so the workers of a parallel search add up.
+ */
+public class SearchMetrics {
+	// expansions between folds into the shared counters
+	private static final int PUBLISH_INTERVAL = 2048;
+	// at least this long between listener calls, and the window the node rate is measured over
+	private static final long NOTIFY_NANOS = 200_000_000L;
+	private static final PruneRule[] RULES = PruneRule.values();
+
+	private final long start = System.nanoTime();
+	private final LongAdder expanded = new LongAdder();
+	private final LongAdder generated = new LongAdder();
+	private final LongAdder openSize = new LongAdder();
+	private final LongAdder tableEntries = new LongAdder();
+	private final LongAdder tableCapacity = new LongAdder();
+	private final LongAdder[] pruned = new LongAdder[RULES.length];
+	private final LongAccumulator bestEstimate = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+	private final List<SearchListener> listeners;
+
+	// the node rate is measured between the two latest rate samples
+	private long rateTime = start, rateExpanded;
+	private double nodesPerSecond;
+	private long lastNotify = start;
+
+	public SearchMetrics() {
+		this(List.of());
+	}
+
+	public SearchMetrics(List<SearchListener> listeners) {
+		this.listeners = new CopyOnWriteArrayList<>(listeners);
+		for (int i = 0; i < pruned.length; i++) {
+			pruned[i] = new LongAdder();
+		}
+	}
+
+	/* A probe for one searching thread, reading the prune counts of its detector and the size of its table */
+	public Probe probe(DeadlockDetector deadlocks, StateStore table) {
+		return new Probe(deadlocks, table);
+	}
+
+	/* The current counters; safe to call from any thread */
+	public synchronized SearchSnapshot snapshot() {
+		long now = System.nanoTime();
+		long count = expanded.sum();
+		if (now - rateTime >= NOTIFY_NANOS) {
+			nodesPerSecond = (count - rateExpanded) * 1e9 / (now - rateTime);
+			rateTime = now;
+			rateExpanded = count;
+		} else if (rateExpanded == 0 && now > start) {
+			nodesPerSecond = count * 1e9 / (now - start);
+		}
+
+		long[] prunedCounts = new long[pruned.length];
+		for (int i = 0; i < pruned.length; i++) {
+			prunedCounts[i] = pruned[i].sum();
+		}
+		long best = bestEstimate.get();
+		return new SearchSnapshot(now - start, count, generated.sum(), nodesPerSecond, openSize.sum(), tableEntries.sum(),
+				tableCapacity.sum(), prunedCounts, best == Long.MAX_VALUE ? -1 : best, maxDepth.get());
+	}
+
+	/* Tells the listeners the solve is over */
+	public void finish() {
+		if (!listeners.isEmpty()) {
+			SearchSnapshot snapshot = snapshot();
+			for (SearchListener listener : listeners) {
+				listener.finished(snapshot);
+			}
+		}
+	}
+
+	private void notifyListeners() {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		SearchSnapshot snapshot;
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (now - lastNotify < NOTIFY_NANOS) {
+				return;
+			}
+			lastNotify = now;
+			snapshot = snapshot();
+		}
+		for (SearchListener listener : listeners) {
+			listener.progress(snapshot);
+		}
+	}
+
+	/* Counts for one searching thread; not thread-safe */
+	public class Probe {
+		private final DeadlockDetector deadlocks;
+		private final StateStore table;
+		private long expandedCount, generatedCount;
+		private long bestH = Long.MAX_VALUE, depth;
+		private int sincePublish;
+		// what was last folded in, so that only the change is added
+		private long publishedExpanded, publishedGenerated, publishedOpen, publishedEntries, publishedCapacity;
+		private final long[] publishedPruned = new long[RULES.length];
+
+		Probe(DeadlockDetector deadlocks, StateStore table) {
+			this.deadlocks = deadlocks;
+			this.table = table;
+		}
+
+		/* Counts an expanded node with its cost so far and its estimate, and every so often publishes the counts */
+		public void expanded(int cost, int estimate, long openSize) {
+			expandedCount++;
+			if (cost > depth) {
+				depth = cost;
+			}
+			if (estimate < bestH) {
+				bestH = estimate;
+			}
+			if (++sincePublish >= PUBLISH_INTERVAL) {
+				publish(openSize);
+			}
+		}
+
+		public void generated(int count) {
+			generatedCount += count;
+		}
+
+		/* Folds the counts into the shared ones; call once more when the search ends so nothing is left behind */
+		public void publish(long open) {
+			sincePublish = 0;
+			expanded.add(expandedCount - publishedExpanded);
+			generated.add(generatedCount - publishedGenerated);
+			openSize.add(open - publishedOpen);
+			publishedExpanded = expandedCount;
+			publishedGenerated = generatedCount;
+			publishedOpen = open;
+
+			if (table != null) {
+				long entries = table.size(), capacity = table.capacity();
+				tableEntries.add(entries - publishedEntries);
+				tableCapacity.add(capacity - publishedCapacity);
+				publishedEntries = entries;
+				publishedCapacity = capacity;
+			}
+			if (deadlocks != null) {
+				for (PruneRule rule : RULES) {
+					long count = deadlocks.getPruned(rule);
+					pruned[rule.ordinal()].add(count - publishedPruned[rule.ordinal()]);
+					publishedPruned[rule.ordinal()] = count;
+				}
+			}
+			if (bestH != Long.MAX_VALUE) {
+				bestEstimate.accumulate(bestH);
+			}
+			maxDepth.accumulate(depth);
+			notifyListeners();
+		}
+	}
+}
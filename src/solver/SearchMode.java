@@ -0,0 +1,21 @@
+package solver;
+
+/* What one step of the search is */
+public enum SearchMode {
+	// every single player move is a node; finds the fewest moves but the player's walking dominates the state space
+	MOVES,
+	// every box push is a node and the player's walking between pushes is folded into a reachable region
+	PUSHES,
+	// push-level search spread over several threads, each owning the states whose box hash maps to it
+	PARALLEL,
+	// push-level search from the initial position meeting a pull search from the goal positions
+	BIDIRECTIONAL,
+	// push-level iterative deepening A* whose memory is bounded by a fixed-size cache and the search depth
+	IDA,
+	// push-level breadth-first iterative deepening A* that keeps its states in sorted files on disk
+	EXTERNAL;
+
+	public static SearchMode parse(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
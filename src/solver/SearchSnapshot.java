@@ -0,0 +1,103 @@
+package solver;
+
+import java.util.Locale;
+
+/* The counters of a SearchMetrics at one moment */
+public class SearchSnapshot {
+	final long elapsedNanos;
+	final long expanded;
+	final long generated;
+	final double nodesPerSecond;
+	final long openSize;
+	final long tableEntries;
+	final long tableCapacity;
+	final long[] pruned;
+	final long bestEstimate;
+	final long maxDepth;
+
+	SearchSnapshot(long elapsedNanos, long expanded, long generated, double nodesPerSecond, long openSize, long tableEntries,
+			long tableCapacity, long[] pruned, long bestEstimate, long maxDepth) {
+		this.elapsedNanos = elapsedNanos;
+		this.expanded = expanded;
+		this.generated = generated;
+		this.nodesPerSecond = nodesPerSecond;
+		this.openSize = openSize;
+		this.tableEntries = tableEntries;
+		this.tableCapacity = tableCapacity;
+		this.pruned = pruned;
+		this.bestEstimate = bestEstimate;
+		this.maxDepth = maxDepth;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getExpanded() {
+		return expanded;
+	}
+
+	public long getGenerated() {
+		return generated;
+	}
+
+	/* Expansions per second over the last fraction of a second */
+	public double getNodesPerSecond() {
+		return nodesPerSecond;
+	}
+
+	/* Nodes waiting on the open lists */
+	public long getOpenSize() {
+		return openSize;
+	}
+
+	public long getTableEntries() {
+		return tableEntries;
+	}
+
+	/* Fraction of the transposition table's slots in use */
+	public double getTableLoad() {
+		return tableCapacity == 0 ? 0 : (double) tableEntries / tableCapacity;
+	}
+
+	public long getPruned(PruneRule rule) {
+		return pruned[rule.ordinal()];
+	}
+
+	public long getPrunedTotal() {
+		long total = 0;
+		for (long count : pruned) {
+			total += count;
+		}
+		return total;
+	}
+
+	/* The smallest heuristic estimate of any expanded node, or -1 before the first expansion */
+	public long getBestEstimate() {
+		return bestEstimate;
+	}
+
+	/* The largest cost, in moves or pushes, of any expanded node */
+	public long getMaxDepth() {
+		return maxDepth;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s nodes/s, %s expanded, open %s, table %.0f%%, depth %d, best h %d, pruned %s",
+				compact(nodesPerSecond), compact(expanded), compact(openSize), getTableLoad() * 100, maxDepth, bestEstimate,
+				compact(getPrunedTotal()));
+	}
+
+	// 1234567 as 1.2M, to keep status lines short
+	static String compact(double value) {
+		if (value >= 1e9) {
+			return String.format(Locale.ROOT, "%.1fG", value / 1e9);
+		} else if (value >= 1e6) {
+			return String.format(Locale.ROOT, "%.1fM", value / 1e6);
+		} else if (value >= 1e4) {
+			return String.format(Locale.ROOT, "%.0fk", value / 1e3);
+		}
+		return String.format(Locale.ROOT, "%.0f", value);
+	}
+}
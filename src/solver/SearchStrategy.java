@@ -0,0 +1,44 @@
+package solver;
+
+/* The order in which the open list hands out states, given a state's cost so far (g) and its estimate to the goal (h) */
+public enum SearchStrategy {
+	// expands states in order of cost, ignoring the estimate
+	BFS {
+		@Override
+		int priority(int g, int h, double weight) {
+			return g;
+		}
+	},
+	// optimal as long as the estimate never overshoots
+	ASTAR {
+		@Override
+		int priority(int g, int h, double weight) {
+			return g + h;
+		}
+	},
+	// trusts the estimate more, solutions cost at most weight times the optimum
+	WEIGHTED_ASTAR {
+		@Override
+		int priority(int g, int h, double weight) {
+			return g + (int) (weight * h);
+		}
+	},
+	// follows the estimate alone, fastest but with no bound on solution length
+	GREEDY {
+		@Override
+		int priority(int g, int h, double weight) {
+			return h;
+		}
+	};
+
+	abstract int priority(int g, int h, double weight);
+
+	/* Reads a strategy name such as "astar", "weighted_astar" or "wastar", ignoring case */
+	public static SearchStrategy parse(String name) {
+		String normalized = name.trim().toUpperCase().replace('-', '_');
+		if (normalized.equals("WASTAR")) {
+			return WEIGHTED_ASTAR;
+		}
+		return valueOf(normalized);
+	}
+}
@@ -1,34 +1,156 @@
 package solver;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 public class SokoBot {
-    private static final char EMPTY = ' ', TARGET = '.', WALL = '#';
-    private static final char PLAYER = '@', BOX = '$';
-    private static final int RIGHT = 0, LEFT = 1, UP = 2, DOWN = 3;
+    private static final int RIGHT = Board.RIGHT, LEFT = Board.LEFT, UP = Board.UP, DOWN = Board.DOWN;
+    private static final String PLAYER_LABEL = "Player Initial Pos", BOXES_LABEL = "Boxes Initial Pos";
+
+    private Board level;
+    private MapAnalysis analysis;
+    private DeadlockDetector deadlocks;
+    private Heuristic heuristic;
+    private PatternDatabase patterns;
+    private NodeArena steps;
+    private Zobrist zobrist;
+    private StateStore minMoves;
+    private final SolverConfig config;
+    private volatile SearchBudget budget;
+    // set by cancel; outlives the budget it was sent to, so a solve that replaces the budget still sees it
+    private volatile boolean cancelled;
+    // the last solution found, kept so that a cancelled anytime search can still hand one back
+    private volatile String bestSolution;
+    private SolveStats stats = new SolveStats();
+    private final List<SearchListener> listeners = new ArrayList<>();
+    private volatile SearchMetrics metrics = new SearchMetrics();
+    // the race of the last solve in the portfolio mode, null otherwise
+    private volatile PortfolioSolver portfolio;
+    // progress counters of the move-level search
+    private SearchMetrics.Probe probe;
+
+    public SokoBot() {
+      this(new SolverConfig());
+    }
 
-    private int rows, cols;
-    private char[][] board;
-    private char[][] itemsData;
-    private Map<String, Integer> minMoves = new HashMap<>();
+	/* Creates a bot that searches with the given strategy, weight and table capacity */
+    public SokoBot(SolverConfig config) {
+      this.config = config;
+      this.budget = new SearchBudget(config.timeLimitMillis, config.nodeLimit);
+    }
 
 	/* Initialize and print the puzzle, locate the player and box positions, and solve the puzzle */
     public String solveSokobanPuzzle(int width, int height, char[][] mapData, char[][] itemsData) {
-      initialize(width, height, mapData, itemsData);
-      int[] playerAndBoxPositions = findPlayerAndBoxPositions(height, width, itemsData);
-      return solve(mapData, playerAndBoxPositions);
+      SearchBudget fresh = new SearchBudget(config.timeLimitMillis, config.nodeLimit);
+      budget = fresh;
+      // checked after the new budget is in place, so a cancel either sees it or is seen here
+      if (cancelled) {
+        fresh.cancel();
+      }
+      fresh.start();
+      bestSolution = null;
+      stats = new SolveStats();
+      metrics = new SearchMetrics(listeners);
+      portfolio = null;
+
+      SolutionCache cache = openSolutionCache();
+      String cached = cache == null ? null : cache.get(width, height, mapData, itemsData);
+      if (cached != null) {
+        System.out.println("Solution from cache " + config.solutionCache);
+        System.out.println("Number of Moves: " + cached.length());
+        System.out.println("Solution String: " + cached);
+        bestSolution = cached;
+        metrics.finish();
+        return cached;
+      }
+
+      String solution;
+      if (config.portfolio) {
+        solution = solvePortfolio(width, height, mapData, itemsData);
+      } else {
+        initialize(width, height, mapData, itemsData);
+        findPlayerAndBoxPositions();
+        solution = solve();
+        stats.stopped = budget.isExhausted();
+      }
+      metrics.finish();
+      if (cache != null && solution != null) {
+        cache.put(width, height, mapData, itemsData, solution);
+      }
+      return solution;
+    }
+
+	/* Races the configurations built around this bot's (see PortfolioSolver) and takes over the winner's counters */
+    private String solvePortfolio(int width, int height, char[][] mapData, char[][] itemsData) {
+      PortfolioSolver race = new PortfolioSolver(PortfolioSolver.lineup(config), config.portfolioLog);
+      portfolio = race;
+      // a cancel that arrived before the race was registered still applies to it
+      if (cancelled) {
+        race.cancel();
+      }
+      String solution = race.solve(width, height, mapData, itemsData);
+      stats = race.getStats();
+      bestSolution = solution;
+      return solution;
+    }
+
+	/* The configured solution cache, or null when there is none or it cannot be used */
+    private SolutionCache openSolutionCache() {
+      if (config.solutionCache == null) {
+        return null;
+      }
+      try {
+        return SolutionCache.at(config.solutionCache);
+      } catch (IOException ex) {
+        System.out.println("Could not open solution cache " + config.solutionCache + ": " + ex.getMessage());
+        return null;
+      }
     }
 
-	/* Initialize the rows, cols, items of the puzzle, and the map */
+	/* Builds the board and everything the searches derive from it */
     private void initialize(int width, int height, char[][] mapData, char[][] itemsData) {
-      this.rows = height;
-      this.cols = width;
-      this.itemsData = itemsData;
-      this.board = mapData;
+      this.level = new Board(width, height, mapData, itemsData);
+      this.analysis = new MapAnalysis(level);
+      this.deadlocks = new DeadlockDetector(analysis, config.pruning);
+      this.patterns = loadPatternDatabase();
+      this.heuristic = createHeuristic();
+      this.zobrist = new Zobrist(level.size);
+      this.minMoves = StateStore.create(level.boxes.length, config.tableCapacity, config);
 
       printInitializationInfo(width, height, mapData);
     }
 
+	/* Maps the configured pattern database, or returns null when there is none or it does not fit this level */
+	private PatternDatabase loadPatternDatabase() {
+      if (config.patternDatabase == null) {
+        return null;
+      }
+
+      try {
+        PatternDatabase database = PatternDatabase.open(config.patternDatabase, level);
+        if (database == null) {
+          System.out.println("Pattern database " + config.patternDatabase + " was built for another level, ignoring it.");
+        }
+        return database;
+      } catch (IOException ex) {
+        System.out.println("Could not read pattern database " + config.patternDatabase + ": " + ex.getMessage());
+        return null;
+      }
+    }
+
+	/* A new push-distance lower bound, combined with the pattern database when one is loaded; each thread needs its own */
+	private Heuristic createHeuristic() {
+      Heuristic lowerBound = new LowerBound(analysis, config.heuristic);
+      return patterns == null ? lowerBound : new PatternHeuristic(lowerBound, patterns, analysis);
+    }
+
+	/* Builds the pattern database of a level and writes it to the given file */
+    public static void buildPatternDatabase(int width, int height, char[][] mapData, char[][] itemsData, Path file) throws IOException {
+      Board board = new Board(width, height, mapData, itemsData);
+      PatternDatabase.build(new MapAnalysis(board)).write(file);
+    }
+
 	/* Display the Sokoban puzzle to be solved */
 	private void printInitializationInfo(int width, int height, char[][] mapData) {
       System.out.println("Width: " + width + ", Height: " + height);
@@ -39,253 +161,335 @@ public class SokoBot {
       System.out.println();
     }
 	
-	/* Locates the player and box positions in the given level */
-    private int[] findPlayerAndBoxPositions(int height, int width, char[][] itemsData) {
-      List<Integer> positions = new ArrayList<>();
-      char[] itemTypes = {PLAYER, BOX};
-
-		// the positions are stored by pair in an integer array, being represented in (row, column) format
-	  	// first, ensures that the player's position is always stored in indices 0 and 1
-		// then, subsequent indices are for box positions
-		for (char itemType : itemTypes) {
-			for (int i = 0; i < height; i++) {
-				for (int j = 0; j < width; j++) {
-					if (itemsData[i][j] == itemType) {
-						positions.add(i);
-						positions.add(j);
-					}
-				}
-			}
-			printPositionsInfo(itemType, positions);
-		}
+	/* Stops a running solve at its next check; safe to call from any thread */
+    public void cancel() {
+      cancelled = true;
+      budget.cancel();
+      PortfolioSolver race = portfolio;
+      if (race != null) {
+        race.cancel();
+      }
+    }
+
+	/* The best solution found so far, which may not be optimal while an anytime search is still running */
+    public String getBestSolution() {
+      PortfolioSolver race = portfolio;
+      return bestSolution != null || race == null ? bestSolution : race.getBestSolution();
+    }
+
+	/* Registers a listener for the progress of the solves that start after this call */
+    public void addListener(SearchListener listener) {
+      listeners.add(listener);
+    }
 
-		// converts to a primitive array
-		return positions.stream().mapToInt(Integer::intValue).toArray();
+	/* Live counters of the running or last solve; safe to poll from another thread */
+    public SearchMetrics getMetrics() {
+      PortfolioSolver race = portfolio;
+      SearchMetrics running = race == null ? null : race.getMetrics();
+      return running != null ? running : metrics;
+    }
+
+	/* Node and table counts of the last solve */
+    public SolveStats getStats() {
+      return stats;
+    }
+
+	/* The deadlock checks of the last solve, with how many states each rule pruned */
+    public DeadlockDetector getDeadlocks() {
+      return deadlocks;
+    }
+
+	/* Locates the player and box positions in the given level */
+    private void findPlayerAndBoxPositions() {
+		// positions are kept as cell indices (row * cols + column)
+		// the box cells are kept sorted, so equal box sets always pack to the same key
+		printPositionsInfo(PLAYER_LABEL, new int[] {level.player});
+		printPositionsInfo(BOXES_LABEL, level.boxes);
 	}
 
 	/* Displays the initial location of the player and boxes */
-    private void printPositionsInfo(char itemType, List<Integer> positions) {
-		String label = (itemType == PLAYER) ? "Player Initial Pos" : "Boxes Initial Pos";
+    private void printPositionsInfo(String label, int[] cells) {
 		System.out.println(label + ": ");
-		for (int i = 0; i < positions.size(); i += 2) {
-			System.out.println("{" + positions.get(i) + ", " + positions.get(i + 1) + "}");
+		for (int cell : cells) {
+			System.out.println("{" + level.row(cell) + ", " + level.col(cell) + "}");
 		}
     }
 
     // initiates the solving process of the Sokoban level
-	private String solve(char[][] board, int[] objectPositions) {
-		this.board = board;
-
-		// Generate the key for the target positions.
-		int[] targetPositions = new int[objectPositions.length - 2];
-		int i = 0;
-
-		for (int r = 0; r < rows; r++){
-		  for (int c = 0; c < cols; c++){
-			if (board[r][c] == TARGET){
-			  targetPositions[i++] = r;
-			  targetPositions[i++] = c;
-			}
-		  }
-		}
-		
-		if (i != targetPositions.length){
+	private String solve() {
+		if (!level.isValid()){
 		  System.out.println("Invalid level. Number of boxes != number of targets.");
 		  return null;
 		}
 
-		String targetKey = getKey(targetPositions);
-		
-		return solve(objectPositions, targetKey);
+		// the push-level modes rebuild the walking themselves and only hand back the finished move string
+		String solution;
+		switch (config.mode) {
+		  case PUSHES -> {
+			if (config.anytime) {
+			  solution = solveAnytime();
+			} else {
+			  PushSearch search = pushSearch(config, Integer.MAX_VALUE);
+			  solution = search.solve();
+			  printMemoryUse(search.getNodes());
+			  record(search.getExpanded(), search.getNodes().size(), minMoves.size(), minMoves.bytes());
+			}
+		  }
+		  case PARALLEL -> {
+			ParallelSearch search = new ParallelSearch(analysis, zobrist, config, this::createHeuristic, deadlocks);
+			search.setBudget(budget);
+			search.setMetrics(metrics);
+			solution = search.solve();
+			record(search.getExpanded(), search.getGenerated(), search.getTableEntries(), search.getTableBytes());
+		  }
+		  case IDA -> {
+			IterativeDeepeningSearch search = new IterativeDeepeningSearch(analysis, zobrist, config, heuristic, deadlocks);
+			search.setBudget(budget);
+			search.setMetrics(metrics);
+			solution = search.solve();
+			record(search.getExpanded(), search.getGenerated(), search.getCacheEntries(), search.getCacheBytes());
+		  }
+		  case EXTERNAL -> {
+			ExternalSearch search = new ExternalSearch(analysis, zobrist, config, heuristic, deadlocks);
+			search.setBudget(budget);
+			search.setMetrics(metrics);
+			solution = search.solve();
+			record(search.getExpanded(), search.getGenerated(), search.getStoredStates(), search.getDiskBytes());
+		  }
+		  case BIDIRECTIONAL -> {
+			BidirectionalSearch search = new BidirectionalSearch(analysis, zobrist, minMoves, config, heuristic, deadlocks);
+			search.setBudget(budget);
+			search.setMetrics(metrics);
+			solution = search.solve();
+			record(search.getExpanded(), search.getGenerated(), minMoves.size(), minMoves.bytes());
+		  }
+		  default -> {
+			// the goal is reached once the sorted box cells equal the sorted target cells
+			return solve(level.player, level.boxes, level.targets);
+		  }
+		}
+
+		deadlocks.printPruneCounts();
+		System.out.println("Search: " + metrics.snapshot());
+		if (solution == null && budget.isExhausted()) {
+		  System.out.println("Search stopped: " + (budget.isCancelled() ? "cancelled" : "out of budget"));
+		}
+		if (solution != null) {
+		  bestSolution = solution;
+		  System.out.println("Number of Moves: " + solution.length());
+		  System.out.println("Solution String: " + solution);
+		}
+		return solution;
     }
 
-    // This method creates a unique key for any given set of object positions.
-    private String getKey(int[] objectPositions) {
-		StringBuilder key = new StringBuilder();
+	private void record(long expanded, long generated, long tableEntries, long tableBytes) {
+		stats.expanded = expanded;
+		stats.generated = generated;
+		stats.tableEntries = tableEntries;
+		stats.tableBytes = tableBytes;
+		// the external mode's states are on disk
+		stats.tableOffHeap = config.mode == SearchMode.EXTERNAL || config.offHeap && config.mode != SearchMode.IDA;
+	}
+
+	/* A push search sharing this bot's table and budget that only looks for solutions under the bound */
+	private PushSearch pushSearch(SolverConfig settings, int costBound) {
+		PushSearch search = new PushSearch(analysis, zobrist, minMoves, settings, heuristic, deadlocks);
+		search.setBudget(budget);
+		search.setMetrics(metrics);
+		search.setCostBound(costBound);
+		return search;
+	}
 
-		for (int i = 0; i < objectPositions.length; i++){
-		  key.append((char)('K' + objectPositions[i]));
+	/*
+	 * Anytime push search: weighted A* finds a first solution quickly, then the search restarts with a smaller
+	 * weight, dropping every node that cannot beat the solution in hand, until the weight reaches 1 or the budget
+	 * runs out. Each improvement is published right away, and a round that finds nothing proves the last one optimal.
+	 */
+	private String solveAnytime() {
+		SolverConfig round = config.copy();
+		round.strategy = SearchStrategy.WEIGHTED_ASTAR;
+		String solution = null;
+		int bound = Integer.MAX_VALUE;
+		// the rounds share the table and the deadlock counters, so one probe publishes only what changed
+		SearchMetrics.Probe rounds = metrics.probe(deadlocks, minMoves);
+
+		while (true) {
+		  System.out.println("Anytime round: w=" + round.weight + ", pushes below " + (bound == Integer.MAX_VALUE ? "any" : bound));
+		  PushSearch search = pushSearch(round, bound);
+		  search.setProbe(rounds);
+		  String improved = search.solve();
+		  printMemoryUse(search.getNodes());
+		  // the table is cleared between rounds, so the largest round is the peak
+		  record(stats.expanded + search.getExpanded(), stats.generated + search.getNodes().size(),
+			  Math.max(stats.tableEntries, minMoves.size()), minMoves.bytes());
+
+		  if (improved == null) {
+			if (!budget.isExhausted() && solution != null) {
+			  System.out.println("No solution with fewer than " + bound + " pushes, the last one is optimal");
+			}
+			return solution;
+		  }
+		  solution = improved;
+		  bestSolution = improved;
+		  bound = search.getSolutionPushes();
+
+		  // with weight 1 the bound is admissible, so the solution is already push-optimal
+		  if (round.weight <= 1.0) {
+			return solution;
+		  }
+		  round.weight = 1.0 + (round.weight - 1.0) / 2;
+		  if (round.weight < 1.05) {
+			round.weight = 1.0;
+		  }
+		  minMoves.clear();
 		}
+	}
 
-		return key.toString();
-    }
+    // second part of solving, attempts to solve the puzzle using the configured search strategy
+    private String solve(int player, int[] boxes, int[] targets) {
+		long targetHash = zobrist.hashBoxes(targets);
 
-    // second part of solving, attempts to solve the puzzle using a breadth-first search approach
-    private String solve(int[] objectPositions, String targetKey) {
+		// steps live in the arena as rows of primitive arrays; the queue hands out their indices
+		steps = new NodeArena(boxes.length);
+		probe = metrics.probe(deadlocks, minMoves);
+		IntBucketQueue queue = new IntBucketQueue();
+		int hcost = heuristic.estimate(player, boxes);
+		if (hcost == Heuristic.UNSOLVABLE) {
+		  return null;
+		}
+
+		// adds the initial position of the objects as the first step, since it has no parent, it has no parent index
+		enqueue(queue, steps.add(NodeArena.NO_PARENT, 0, 0, hcost, player, boxes, zobrist.hashBoxes(boxes)));
 
-		// creates a queue to process the steps
-		Queue<Step> queue = new ArrayDeque<>();
-		// adds the initial position of the objects as the first step, since it has no parent, the parent parameter is set to null
-		queue.add(new Step(objectPositions, 0, 0, null, calculateManhattanHeuristic(objectPositions)));
+		// scratch space for the box cells of the current step and of a step that pushes a box, and the current boxes as a bitset
+		int[] current = new int[boxes.length];
+		int[] pushed = new int[boxes.length];
+		long[] occupied = level.newCellSet();
+		long expanded = 0;
 
 		// continues processing while there are still steps in the queue
 		while (!queue.isEmpty()){
-		  Step s = queue.poll();
-		  sort(s.objectPositions);
-		  String key = getKey(s.objectPositions);
-
-		  // for checking the target key, we skip checking the player position and instead only look at the position of the boxes
-		  if (targetKey.equals(key.substring(2))){
-			System.out.println("Number of Moves: " + s.numMove);
+		  if (budget.exhausted()) {
+			probe.publish(queue.size());
+			System.out.println("Search stopped: " + (budget.isCancelled() ? "cancelled" : "out of budget"));
+			break;
+		  }
+		  int s = queue.poll();
+		  int sPlayer = steps.getState(s, current);
+		  int numMove = steps.getCost(s);
+		  long boxHash = steps.getBoxHash(s);
+		  long hash = zobrist.withPlayer(boxHash, sPlayer);
+
+		  // for checking the target, we skip the player position and compare the packed box sets only
+		  if (boxHash == targetHash && Arrays.equals(current, targets)){
+			probe.publish(queue.size());
+			deadlocks.printPruneCounts();
+			System.out.println("Search: " + metrics.snapshot());
+			printMemoryUse(steps);
+			record(expanded, steps.size(), minMoves.size(), minMoves.bytes());
+			System.out.println("Number of Moves: " + numMove);
 			System.out.println("Solution String: " + getMoves(s));
-			return getMoves(s);
+			bestSolution = getMoves(s);
+			return bestSolution;
 		  }
-		  else if (minMoves.containsKey(key) && s.numMove >= minMoves.get(key)){
+
+		  int best = minMoves.get(sPlayer, current, hash);
+		  if (best >= 0 && numMove >= best){
 			continue;
 		  }
 
 		  // each state is mapped to the number of moves it took to get to that state
-		  minMoves.put(key, s.numMove);
+		  minMoves.put(sPlayer, current, hash, numMove);
+		  expanded++;
+		  probe.expanded(numMove, steps.getEstimate(s), queue.size());
 
 		  // for each move in the possible directions, check to see if they are valid moves before adding to the queue
-		  addIfValid(queue, s, -1, 0, s.numMove + 1, UP);
-		  addIfValid(queue, s, 1, 0, s.numMove + 1, DOWN);
-		  addIfValid(queue, s, 0, -1, s.numMove + 1, LEFT);
-		  addIfValid(queue, s, 0, 1, s.numMove + 1, RIGHT);
+		  Board.addCells(occupied, current);
+		  addIfValid(queue, s, sPlayer, current, occupied, pushed, numMove + 1, UP);
+		  addIfValid(queue, s, sPlayer, current, occupied, pushed, numMove + 1, DOWN);
+		  addIfValid(queue, s, sPlayer, current, occupied, pushed, numMove + 1, LEFT);
+		  addIfValid(queue, s, sPlayer, current, occupied, pushed, numMove + 1, RIGHT);
+		  Board.removeCells(occupied, current);
 		}
 
+		probe.publish(0);
+		printMemoryUse(steps);
+		record(expanded, steps.size(), minMoves.size(), minMoves.bytes());
 		return null; // no solution found
     }
 
-    // This method sorts the object positions in ascending order using bubble sort.
-    // Prioritizes the row coordinate, then column e.g. (5,1 > 4,2, 3,1 < 3,2)
-    // Ignores the player position indices (0,1) to ensure that it still stays at the beginning of the array
-    private void sort(int[] arr) {
-
-    boolean isChanged;
-
-		do {
-		  isChanged = false;
-		  for (int i = 2; i < arr.length - 2; i += 2) {
-			if (arr[i] > arr[i + 2] || (arr[i] == arr[i + 2] && arr[i + 1] > arr[i + 3])) {
-			  int tr = arr[i];
-			  int tc = arr[i + 1];
-			  arr[i] = arr[i + 2];
-			  arr[i + 1] = arr[i + 3];
-			  arr[i + 2] = tr;
-			  arr[i + 3] = tc;
-			  isChanged = true;
-			}
-		  }
-		} while (isChanged);
+    // This method adds a step to the queue, prioritized by its cost so far and its heuristic estimate.
+    private void enqueue(IntBucketQueue queue, int s) {
+		probe.generated(1);
+		queue.add(s, config.strategy.priority(steps.getCost(s), steps.getEstimate(s), config.weight));
     }
 
-    // This method adds a new step to the queue only if it's a valid move.
-    private void addIfValid(Queue<Step> queue, Step s, int dr, int dc, int numMovesP1, int thisMove) {
-		int playerR = s.objectPositions[0] + dr; // change in row pos
-		int playerC = s.objectPositions[1] + dc; // change in column pos
-
-		// Ensure the player stays within bounds and doesn't hit a wall.
-		if (playerR < 0 || playerR >= rows || playerC < 0 || playerC >= cols || board[playerR][playerC] == WALL) {
+    // This method adds a new step to the queue only if it's a valid move. occupied holds the same cells as boxes.
+    private void addIfValid(IntBucketQueue queue, int s, int player, int[] boxes, long[] occupied, int[] pushed, int numMovesP1, int thisMove) {
+		// the neighbour table is -1 past the edge and into walls, so one load checks both
+		int playerCell = level.next[player * 4 + thisMove];
+		if (playerCell < 0) {
 		  return;
 		}
 
-		int[] newPositions = null;
+		int[] newBoxes = boxes;
+		long boxHash = steps.getBoxHash(s);
 
 		// Pushing a box
-		for (int i = 2; i < s.objectPositions.length; i += 2) {
-		  if (playerR == s.objectPositions[i] && playerC == s.objectPositions[i + 1]) {
-			int boxR = playerR + dr;
-			int boxC = playerC + dc;
-
-			// Ensure the box stays within bounds and doesn't hit a wall.
-			if (boxR < 0 || boxR >= rows || boxC < 0 || boxC >= cols || board[boxR][boxC] == WALL) {
-			  return;
-			}
+		if (Board.contains(occupied, playerCell)) {
+		  // Ensure the box doesn't hit a wall or another box.
+		  int boxCell = level.next[playerCell * 4 + thisMove];
+		  if (boxCell < 0 || Board.contains(occupied, boxCell)) {
+			return;
+		  }
 
-			// Ensure the box doesn't hit another box.
-			for (int j = 2; j < s.objectPositions.length; j += 2) {
-			  if (boxR == s.objectPositions[j] && boxC == s.objectPositions[j + 1]) {
-				return;
-			  }
-			}
+		  newBoxes = Board.moveBox(boxes, Arrays.binarySearch(boxes, playerCell), boxCell, pushed);
+		  boxHash = zobrist.moveBox(boxHash, playerCell, boxCell);
 
-			// Set newPositions to the updated positions.
-			newPositions = new int[s.objectPositions.length];
-			System.arraycopy(s.objectPositions, 0, newPositions, 0, s.objectPositions.length);
-			newPositions[0] = playerR;
-			newPositions[1] = playerC;
-			newPositions[i] = boxR;
-			newPositions[i + 1] = boxC;
-			break;
+		  // Ensure the push doesn't leave a box where it can never reach a target.
+		  if (deadlocks.check(newBoxes, boxCell) != null) {
+			return;
 		  }
-        } 
-
-		// If the box wasn't moved, update only the player's row and column.
-		if (newPositions == null) {
-		  newPositions = new int[s.objectPositions.length];
-		  System.arraycopy(s.objectPositions, 0, newPositions, 0, s.objectPositions.length);
-		  newPositions[0] = playerR;
-		  newPositions[1] = playerC;
 		}
 
-		int hcost = calculateManhattanHeuristic(newPositions);
-		Step newStep = new Step(newPositions, numMovesP1, thisMove, s, hcost);
-		queue.add(newStep);
+		// If the box wasn't moved, the child shares the parent's estimate.
+		int hcost = steps.getEstimate(s);
+		if (newBoxes != boxes) {
+		  hcost = heuristic.estimate(playerCell, newBoxes);
+		  if (hcost == Heuristic.UNSOLVABLE) {
+			deadlocks.prune(PruneRule.NO_MATCHING);
+			return;
+		  }
+		}
+		enqueue(queue, steps.add(s, thisMove, numMovesP1, hcost, playerCell, newBoxes, boxHash));
     }
 
     // This method constructs the sequence of moves from the solved puzzle.
-    private String getMoves(Step step) {
+    private String getMoves(int step) {
 		StringBuilder s = new StringBuilder();
 		
 		// continues to backtrack the moves taken from the goal state to the initial state
-		while(step.parent != null) {
-			switch (step.prevMove) {
+		while(steps.getParent(step) != NodeArena.NO_PARENT) {
+			switch (steps.getMove(step)) {
 				case RIGHT -> s.append("r");
 				case LEFT -> s.append("l");
 				case UP -> s.append("u");
 				case DOWN -> s.append("d");
 			}
 			
-			step = step.parent;
+			step = steps.getParent(step);
 		}
 		
 		// the string output is reversed as the bot starts from the initial state
 		return s.reverse().toString().trim();
     }
 
-    // Represents a step in the puzzle-solving process.
-    private class Step {
-		int[] objectPositions;
-		int numMove;
-		int prevMove;
-		int hcost;
-		int gcost;
-		Step parent;
-
-		public Step(int[] objectPositions, int numMove, int prevMove, Step parent, int hcost) {
-			this.objectPositions = objectPositions;
-            this.numMove = numMove;
-            this.prevMove = prevMove;
-            this.parent = parent;
-            this.hcost = hcost;
-            this.gcost = numMove;
-		}
-    }
-	
-	/* Calculate the Manhattan distance heuristic */
-    private int calculateManhattanHeuristic(int[] objectPositions) {
-        int totalManhattan = 0;
-        int numBoxes = (objectPositions.length - 2) / 2; // Calculate the number of boxes
-        int playerR = objectPositions[0];
-        int playerC = objectPositions[1];
-
-        for (int i = 2; i < objectPositions.length; i += 2) {
-            int boxR = objectPositions[i];
-            int boxC = objectPositions[i + 1];
-            int minDistance = Integer.MAX_VALUE;
-
-            for (int j = 2; j < objectPositions.length; j += 2) {
-				int targetR = objectPositions[j];
-				int targetC = objectPositions[j + 1];
-				int playerToBox = Math.abs(boxR - playerR) + Math.abs(boxC - playerC);
-				int boxToTarget = Math.abs(boxR - targetR) + Math.abs(boxC - targetC);
-				minDistance = Math.min(minDistance, playerToBox + boxToTarget);
-            }
-
-            totalManhattan += minDistance;
-        }
-
-        return totalManhattan;
+	/* Reports how many nodes were stored and how many would fit in a gigabyte, for sizing the heap */
+    private void printMemoryUse(NodeArena nodes) {
+		int tableBytes = (int) Math.ceil(minMoves.bytesPerEntry());
+		System.out.println("Nodes stored: " + nodes.size() + " (" + nodes.bytesPerNode() + " bytes each, "
+			+ tableBytes + " bytes per table entry)");
+		// every node also sits in the open list once, as one int
+		System.out.println("Nodes per GB: " + nodes.nodesPerGigabyte(tableBytes + Integer.BYTES));
     }
-}
\ No newline at end of file
+}
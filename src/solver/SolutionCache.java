@@ -0,0 +1,413 @@
+package solver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Solutions of levels solved before, kept in a directory with one file per level and fronted by an
+ * in-memory LRU map. A level is keyed by its canonical form: floor the player can never reach is
+ * dropped, the grid is cropped, and of its 8 rotations and reflections the one with the smallest text
+ * is taken, so a level that was merely turned or mirrored still hits. Solutions are stored in the
+ * canonical orientation and turned back into the caller's on the way out.
+ */
+public class SolutionCache {
+	public static final int DEFAULT_MEMORY_ENTRIES = 1024;
+	public static final int DEFAULT_DISK_ENTRIES = 10000;
+	private static final String SUFFIX = ".sol";
+	// one cache per directory in a JVM, so the LRU front outlives the bots that use it
+	private static final Map<Path, SolutionCache> OPEN = new HashMap<>();
+
+	private final Path directory;
+	private final int diskEntries;
+	private final LinkedHashMap<String, String> memory;
+
+	public SolutionCache(Path directory, int memoryEntries, int diskEntries) throws IOException {
+		this.directory = directory;
+		this.diskEntries = diskEntries;
+		this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > memoryEntries;
+			}
+		};
+		Files.createDirectories(directory);
+	}
+
+	/* The shared cache of a directory, with the default sizes */
+	public static synchronized SolutionCache at(Path directory) throws IOException {
+		Path key = directory.toAbsolutePath().normalize();
+		SolutionCache cache = OPEN.get(key);
+		if (cache == null) {
+			cache = new SolutionCache(directory, DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_ENTRIES);
+			OPEN.put(key, cache);
+		}
+		return cache;
+	}
+
+	/* The cached solution of the level in the caller's orientation, or null */
+	public String get(int width, int height, char[][] mapData, char[][] itemsData) {
+		Level level = Level.canonical(width, height, mapData, itemsData);
+		String moves;
+		synchronized (memory) {
+			moves = memory.get(level.text);
+		}
+		if (moves == null) {
+			moves = load(level);
+			if (moves == null) {
+				return null;
+			}
+			synchronized (memory) {
+				memory.put(level.text, moves);
+			}
+		}
+		return level.fromCanonical(moves);
+	}
+
+	/* Stores a solution given in the caller's orientation, unless a shorter one is already cached */
+	public void put(int width, int height, char[][] mapData, char[][] itemsData, String solution) {
+		Level level = Level.canonical(width, height, mapData, itemsData);
+		String moves = level.toCanonical(solution);
+		if (!level.solvedBy(moves)) {
+			return;
+		}
+
+		String known = get(width, height, mapData, itemsData);
+		if (known != null && known.length() <= moves.length()) {
+			return;
+		}
+		synchronized (memory) {
+			memory.put(level.text, moves);
+		}
+		try {
+			Files.writeString(file(level), level.text + "\n" + moves + "\n");
+			evict();
+		} catch (IOException ex) {
+			System.out.println("Could not write to the solution cache: " + ex.getMessage());
+		}
+	}
+
+	/* Whether the moves, given in the caller's orientation, leave every box of the level on a target */
+	static boolean solves(int width, int height, char[][] mapData, char[][] itemsData, String moves) {
+		Level level = Level.canonical(width, height, mapData, itemsData);
+		return level.solvedBy(level.toCanonical(moves));
+	}
+
+	/* A name for the level that stays the same when the level is turned or mirrored */
+	static String digest(int width, int height, char[][] mapData, char[][] itemsData) {
+		return Level.canonical(width, height, mapData, itemsData).digest();
+	}
+
+	// reads and checks the level's file; a file that does not match or does not solve the level is ignored
+	private String load(Level level) {
+		Path file = file(level);
+		try {
+			if (!Files.exists(file)) {
+				return null;
+			}
+			List<String> lines = Files.readAllLines(file);
+			String text = String.join("\n", lines.subList(0, Math.max(0, lines.size() - 1)));
+			String moves = lines.isEmpty() ? "" : lines.get(lines.size() - 1);
+			if (!text.equals(level.text) || !level.solvedBy(moves)) {
+				return null;
+			}
+			// the file's age orders the eviction, so a hit counts as a use
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return moves;
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	// removes the least recently used files beyond the disk bound
+	private void evict() throws IOException {
+		List<Path> files;
+		try (Stream<Path> listing = Files.list(directory)) {
+			files = listing.filter(file -> file.toString().endsWith(SUFFIX)).collect(Collectors.toList());
+		}
+		if (files.size() <= diskEntries) {
+			return;
+		}
+		files.sort(Comparator.comparing(file -> {
+			try {
+				return Files.getLastModifiedTime(file);
+			} catch (IOException ex) {
+				return FileTime.fromMillis(0);
+			}
+		}));
+		for (Path file : files.subList(0, files.size() - diskEntries)) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private Path file(Level level) {
+		return directory.resolve(level.digest() + SUFFIX);
+	}
+
+	/*
+	 * A level as one grid of tiles in the canonical orientation. The orientation is one of 8 transforms:
+	 * bit 0 flips the rows, bit 1 flips the columns, and bit 2 then swaps rows and columns.
+	 */
+	static class Level {
+		private static final char OUTSIDE = ' ';
+		private static final String MOVES = "udlr";
+
+		final char[][] grid;
+		final String text;
+		final int transform;
+
+		private Level(char[][] grid, int transform) {
+			this.grid = grid;
+			this.transform = transform;
+			this.text = toText(grid);
+		}
+
+		static Level canonical(int width, int height, char[][] mapData, char[][] itemsData) {
+			char[][] grid = trim(merge(width, height, mapData, itemsData));
+			Level best = null;
+			for (int t = 0; t < 8; t++) {
+				Level candidate = new Level(transform(grid, t), t);
+				if (best == null || candidate.text.compareTo(best.text) < 0) {
+					best = candidate;
+				}
+			}
+			return best;
+		}
+
+		// the two layers as one grid in the usual level characters
+		private static char[][] merge(int width, int height, char[][] mapData, char[][] itemsData) {
+			char[][] grid = new char[height][width];
+			for (int r = 0; r < height; r++) {
+				for (int c = 0; c < width; c++) {
+					char tile = c < mapData[r].length ? mapData[r][c] : OUTSIDE;
+					char item = c < itemsData[r].length ? itemsData[r][c] : OUTSIDE;
+					boolean goal = tile == Board.TARGET;
+					if (tile == Board.WALL) {
+						grid[r][c] = Board.WALL;
+					} else if (item == Board.BOX) {
+						grid[r][c] = goal ? '*' : Board.BOX;
+					} else if (item == Board.PLAYER) {
+						grid[r][c] = goal ? '+' : Board.PLAYER;
+					} else {
+						grid[r][c] = goal ? Board.TARGET : OUTSIDE;
+					}
+				}
+			}
+			return grid;
+		}
+
+		// keeps the floor connected to the player, a box or a goal, and the walls around it; then crops the grid
+		private static char[][] trim(char[][] grid) {
+			int rows = grid.length, cols = rows == 0 ? 0 : grid[0].length;
+			boolean[][] keep = new boolean[rows][cols];
+			ArrayDeque<int[]> queue = new ArrayDeque<>();
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					char tile = grid[r][c];
+					// boxes can be pushed on, so the floor past them counts as well
+					if (tile != Board.WALL && tile != OUTSIDE) {
+						keep[r][c] = true;
+						queue.add(new int[] {r, c});
+					}
+				}
+			}
+			while (!queue.isEmpty()) {
+				int[] cell = queue.poll();
+				for (int[] d : new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}}) {
+					int r = cell[0] + d[0], c = cell[1] + d[1];
+					if (r >= 0 && r < rows && c >= 0 && c < cols && !keep[r][c] && grid[r][c] != Board.WALL) {
+						keep[r][c] = true;
+						queue.add(new int[] {r, c});
+					}
+				}
+			}
+
+			int top = rows, bottom = -1, left = cols, right = -1;
+			char[][] kept = new char[rows][cols];
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					kept[r][c] = keep[r][c] ? grid[r][c] : grid[r][c] == Board.WALL && nextToKept(keep, r, c) ? Board.WALL : OUTSIDE;
+					if (kept[r][c] != OUTSIDE || keep[r][c]) {
+						top = Math.min(top, r);
+						bottom = Math.max(bottom, r);
+						left = Math.min(left, c);
+						right = Math.max(right, c);
+					}
+				}
+			}
+
+			char[][] cropped = new char[Math.max(0, bottom - top + 1)][Math.max(0, right - left + 1)];
+			for (int r = 0; r < cropped.length; r++) {
+				System.arraycopy(kept[top + r], left, cropped[r], 0, cropped[r].length);
+			}
+			return cropped;
+		}
+
+		private static boolean nextToKept(boolean[][] keep, int r, int c) {
+			for (int dr = -1; dr <= 1; dr++) {
+				for (int dc = -1; dc <= 1; dc++) {
+					int nr = r + dr, nc = c + dc;
+					if (nr >= 0 && nr < keep.length && nc >= 0 && nc < keep[nr].length && keep[nr][nc]) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private static char[][] transform(char[][] grid, int t) {
+			int rows = grid.length, cols = rows == 0 ? 0 : grid[0].length;
+			boolean swap = (t & 4) != 0;
+			char[][] out = swap ? new char[cols][rows] : new char[rows][cols];
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					int nr = (t & 1) != 0 ? rows - 1 - r : r;
+					int nc = (t & 2) != 0 ? cols - 1 - c : c;
+					if (swap) {
+						out[nc][nr] = grid[r][c];
+					} else {
+						out[nr][nc] = grid[r][c];
+					}
+				}
+			}
+			return out;
+		}
+
+		/* Turns moves made on the caller's level into moves on the canonical grid */
+		String toCanonical(String moves) {
+			StringBuilder out = new StringBuilder(moves.length());
+			for (int i = 0; i < moves.length(); i++) {
+				int dir = MOVES.indexOf(moves.charAt(i));
+				int dr = dir == 0 ? -1 : dir == 1 ? 1 : 0;
+				int dc = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+				dr = (transform & 1) != 0 ? -dr : dr;
+				dc = (transform & 2) != 0 ? -dc : dc;
+				out.append((transform & 4) != 0 ? move(dc, dr) : move(dr, dc));
+			}
+			return out.toString();
+		}
+
+		/* Turns moves on the canonical grid back into moves on the caller's level */
+		String fromCanonical(String moves) {
+			StringBuilder out = new StringBuilder(moves.length());
+			for (int i = 0; i < moves.length(); i++) {
+				int dir = MOVES.indexOf(moves.charAt(i));
+				int dr = dir == 0 ? -1 : dir == 1 ? 1 : 0;
+				int dc = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+				if ((transform & 4) != 0) {
+					int swap = dr;
+					dr = dc;
+					dc = swap;
+				}
+				dr = (transform & 1) != 0 ? -dr : dr;
+				dc = (transform & 2) != 0 ? -dc : dc;
+				out.append(move(dr, dc));
+			}
+			return out.toString();
+		}
+
+		private static char move(int dr, int dc) {
+			return dr < 0 ? 'u' : dr > 0 ? 'd' : dc < 0 ? 'l' : 'r';
+		}
+
+		/* Whether playing the moves on the canonical grid leaves every box on a goal */
+		boolean solvedBy(String moves) {
+			char[][] board = new char[grid.length][];
+			int pr = -1, pc = -1;
+			for (int r = 0; r < grid.length; r++) {
+				board[r] = grid[r].clone();
+				for (int c = 0; c < board[r].length; c++) {
+					if (board[r][c] == Board.PLAYER || board[r][c] == '+') {
+						pr = r;
+						pc = c;
+					}
+				}
+			}
+			if (pr < 0) {
+				return false;
+			}
+
+			for (int i = 0; i < moves.length(); i++) {
+				int dir = MOVES.indexOf(moves.charAt(i));
+				if (dir < 0) {
+					return false;
+				}
+				int dr = dir == 0 ? -1 : dir == 1 ? 1 : 0;
+				int dc = dir == 2 ? -1 : dir == 3 ? 1 : 0;
+				int r = pr + dr, c = pc + dc;
+				if (!open(board, r, c)) {
+					return false;
+				}
+				if (hasBox(board[r][c])) {
+					if (!open(board, r + dr, c + dc) || hasBox(board[r + dr][c + dc])) {
+						return false;
+					}
+					board[r + dr][c + dc] = isGoal(board[r + dr][c + dc]) ? '*' : Board.BOX;
+				}
+				board[r][c] = isGoal(board[r][c]) ? '+' : Board.PLAYER;
+				board[pr][pc] = isGoal(board[pr][pc]) ? Board.TARGET : OUTSIDE;
+				pr = r;
+				pc = c;
+			}
+
+			for (char[] row : board) {
+				for (char tile : row) {
+					if (tile == Board.BOX) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private static boolean open(char[][] board, int r, int c) {
+			return r >= 0 && r < board.length && c >= 0 && c < board[r].length && board[r][c] != Board.WALL;
+		}
+
+		private static boolean hasBox(char tile) {
+			return tile == Board.BOX || tile == '*';
+		}
+
+		private static boolean isGoal(char tile) {
+			return tile == Board.TARGET || tile == '*' || tile == '+';
+		}
+
+		private static String toText(char[][] grid) {
+			StringBuilder text = new StringBuilder();
+			for (int r = 0; r < grid.length; r++) {
+				if (r > 0) {
+					text.append('\n');
+				}
+				// trailing blanks are cut so the text survives being read back line by line
+				text.append(new String(grid[r]).stripTrailing());
+			}
+			return text.toString();
+		}
+
+		// SHA-256 of the text, as a file name
+		String digest() {
+			try {
+				byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+				StringBuilder hex = new StringBuilder();
+				for (int i = 0; i < 16; i++) {
+					hex.append(String.format("%02x", hash[i]));
+				}
+				return hex.toString();
+			} catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+}
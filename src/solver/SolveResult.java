@@ -0,0 +1,56 @@
+package solver;
+
+/* The outcome of one level solved by a SolverService */
+public class SolveResult {
+	final String name;
+	final String solution;
+	final SolveStats stats;
+	final long millis;
+	final boolean expired;
+	final Throwable failure;
+
+	SolveResult(String name, String solution, SolveStats stats, long millis, boolean expired, Throwable failure) {
+		this.name = name;
+		this.solution = solution;
+		this.stats = stats;
+		this.millis = millis;
+		this.expired = expired;
+		this.failure = failure;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/* The move string, or null when the level was not solved */
+	public String getSolution() {
+		return solution;
+	}
+
+	/* Counters of the solve; empty when the job never ran */
+	public SolveStats getStats() {
+		return stats;
+	}
+
+	/* Time spent solving, not counting the time the job waited for a worker or for memory */
+	public long getMillis() {
+		return millis;
+	}
+
+	/* Whether the job ran out of time, out of its node allowance or was cancelled before it found a solution */
+	public boolean isExpired() {
+		return expired;
+	}
+
+	/* The error the solve ended with, or null */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		String outcome = failure != null ? "failed: " + failure : solution != null ? solution.length() + " moves"
+				: expired ? "out of budget" : "no solution";
+		return name + ": " + outcome + " in " + millis + "ms (" + stats + ")";
+	}
+}
@@ -0,0 +1,53 @@
+package solver;
+
+/* Counters of one solve, for comparing settings and catching regressions */
+public class SolveStats {
+	long expanded;
+	long generated;
+	long tableEntries;
+	long tableBytes;
+	boolean tableOffHeap;
+	boolean stopped;
+	String winner;
+
+	/* States taken off the open list and expanded */
+	public long getExpanded() {
+		return expanded;
+	}
+
+	/* States created as successors, including ones later found to be duplicates */
+	public long getGenerated() {
+		return generated;
+	}
+
+	/* States in the transposition table when the search ended; tables never shrink during a search, so this is its peak */
+	public long getTableEntries() {
+		return tableEntries;
+	}
+
+	/* Bytes the transposition table held when the search ended, for sizing the heap or the machine */
+	public long getTableBytes() {
+		return tableBytes;
+	}
+
+	/* Whether the table was kept off the heap (see OffHeapStateTable) */
+	public boolean isTableOffHeap() {
+		return tableOffHeap;
+	}
+
+	/* Whether the search was cut short by its time or node limit, or cancelled */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/* The configuration that won a portfolio solve (see PortfolioSolver), or null */
+	public String getWinner() {
+		return winner;
+	}
+
+	@Override
+	public String toString() {
+		return "expanded=" + expanded + " generated=" + generated + " table=" + tableEntries + " tableBytes=" + tableBytes
+				+ (tableOffHeap ? " (off-heap)" : "") + (winner != null ? " winner=" + winner : "");
+	}
+}
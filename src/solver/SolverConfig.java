@@ -0,0 +1,167 @@
+package solver;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+
+/* Settings that trade solution quality for solve time, shared by the GUI and the bot */
+public class SolverConfig {
+	public static final double DEFAULT_WEIGHT = 2.0;
+	private static final String THREADS_ARG = "threads=";
+	private static final String TIME_ARG = "time=", NODES_ARG = "nodes=", ANYTIME_ARG = "anytime";
+	private static final String CACHE_ARG = "cache=", NO_MACROS_ARG = "nomacros", MEMORY_ARG = "ttmb=";
+	private static final String OFF_HEAP_ARG = "offheap", SPILL_ARG = "spill=", SORT_ARG = "sortmb=";
+	private static final String PORTFOLIO_ARG = "portfolio";
+
+	public SearchMode mode = SearchMode.PUSHES;
+	public SearchStrategy strategy = SearchStrategy.ASTAR;
+	public HeuristicMode heuristic = HeuristicMode.MATCHING;
+	// only used by WEIGHTED_ASTAR
+	public double weight = DEFAULT_WEIGHT;
+	public int tableCapacity = StateTable.DEFAULT_CAPACITY;
+	// keep the visited states outside the heap (see OffHeapStateTable), in memory-mapped files in the directory if one is given
+	public boolean offHeap;
+	public Path offHeapDirectory;
+	// worker threads for the parallel mode
+	public int threads = Runtime.getRuntime().availableProcessors();
+	// size of the IDA mode's transposition cache, which is all the memory it needs beyond the current path
+	public long memoryMegabytes = 64;
+	// where the external mode writes its state files, the system's temporary directory when null, and how much memory
+	// it sorts them in
+	public Path spillDirectory;
+	public long sortMegabytes = 64;
+	public EnumSet<PruneRule> pruning = EnumSet.allOf(PruneRule.class);
+	// pair costs built offline for this level (see PatternDatabase), or null to go without
+	public Path patternDatabase;
+	// limits for one solve (see SearchBudget), 0 for none
+	public long timeLimitMillis;
+	public long nodeLimit;
+	// keep improving the first push solution with smaller weights until the budget runs out
+	public boolean anytime;
+	// push a box through tunnels and into the goal room as one step (see Macros)
+	public boolean macros = true;
+	// directory of solved levels to answer from before searching (see SolutionCache), or null to always search
+	public Path solutionCache;
+	// race several configurations built around this one (see PortfolioSolver), logging the winners to the file if one is given
+	public boolean portfolio;
+	public Path portfolioLog;
+
+	public SolverConfig() {
+	}
+
+	public SolverConfig(SearchStrategy strategy, double weight) {
+		this.strategy = strategy;
+		this.weight = weight;
+	}
+
+	/* Reads optional settings such as "astar", "pushes", "threads=8", "time=5000" or a weight like "1.5" from the arguments starting at the given index */
+	public static SolverConfig fromArgs(String[] args, int from) {
+		SolverConfig config = new SolverConfig();
+		for (int i = from; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.startsWith(THREADS_ARG)) {
+				config.threads = Integer.parseInt(arg.substring(THREADS_ARG.length()));
+				if (config.threads < 1) {
+					throw new IllegalArgumentException("Thread count must be at least 1: " + arg);
+				}
+			} else if (arg.startsWith(TIME_ARG)) {
+				config.timeLimitMillis = parseLimit(arg, TIME_ARG);
+			} else if (arg.startsWith(MEMORY_ARG)) {
+				config.memoryMegabytes = parseLimit(arg, MEMORY_ARG);
+			} else if (arg.startsWith(SORT_ARG)) {
+				config.sortMegabytes = parseLimit(arg, SORT_ARG);
+			} else if (arg.startsWith(SPILL_ARG)) {
+				config.spillDirectory = Path.of(arg.substring(SPILL_ARG.length()));
+			} else if (arg.startsWith(NODES_ARG)) {
+				config.nodeLimit = parseLimit(arg, NODES_ARG);
+			} else if (arg.startsWith(CACHE_ARG)) {
+				config.solutionCache = Path.of(arg.substring(CACHE_ARG.length()));
+			} else if (arg.equalsIgnoreCase(ANYTIME_ARG)) {
+				config.anytime = true;
+			} else if (arg.equalsIgnoreCase(OFF_HEAP_ARG)) {
+				config.offHeap = true;
+			} else if (arg.startsWith(OFF_HEAP_ARG + "=")) {
+				config.offHeap = true;
+				config.offHeapDirectory = Path.of(arg.substring(OFF_HEAP_ARG.length() + 1));
+			} else if (arg.equalsIgnoreCase(PORTFOLIO_ARG)) {
+				config.portfolio = true;
+			} else if (arg.startsWith(PORTFOLIO_ARG + "=")) {
+				config.portfolio = true;
+				config.portfolioLog = Path.of(arg.substring(PORTFOLIO_ARG.length() + 1));
+			} else if (arg.equalsIgnoreCase(NO_MACROS_ARG)) {
+				config.macros = false;
+			} else if (Character.isDigit(arg.charAt(0))) {
+				config.weight = Double.parseDouble(arg);
+				if (config.weight < 1.0) {
+					throw new IllegalArgumentException("Weight must be at least 1: " + arg);
+				}
+			} else if (isOneOf(SearchMode.values(), arg)) {
+				config.mode = SearchMode.parse(arg);
+			} else if (isOneOf(HeuristicMode.values(), arg)) {
+				config.heuristic = HeuristicMode.parse(arg);
+			} else {
+				config.strategy = SearchStrategy.parse(arg);
+			}
+		}
+		return config;
+	}
+
+	private static long parseLimit(String arg, String prefix) {
+		long limit = Long.parseLong(arg.substring(prefix.length()));
+		if (limit < 0) {
+			throw new IllegalArgumentException("Limit must not be negative: " + arg);
+		}
+		return limit;
+	}
+
+	private static boolean isOneOf(Enum<?>[] values, String arg) {
+		for (Enum<?> value : values) {
+			if (value.name().equalsIgnoreCase(arg.trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Where the pattern database of a map in the maps directory is kept; "name:n" levels of a collection get one each */
+	public static Path patternDatabaseFor(String mapName) {
+		return Path.of("maps", mapName.replace(':', '-') + ".pdb");
+	}
+
+	public SolverConfig copy() {
+		SolverConfig copy = new SolverConfig(strategy, weight);
+		copy.mode = mode;
+		copy.heuristic = heuristic;
+		copy.threads = threads;
+		copy.memoryMegabytes = memoryMegabytes;
+		copy.spillDirectory = spillDirectory;
+		copy.sortMegabytes = sortMegabytes;
+		copy.patternDatabase = patternDatabase;
+		copy.pruning = EnumSet.copyOf(pruning);
+		copy.tableCapacity = tableCapacity;
+		copy.offHeap = offHeap;
+		copy.offHeapDirectory = offHeapDirectory;
+		copy.timeLimitMillis = timeLimitMillis;
+		copy.nodeLimit = nodeLimit;
+		copy.anytime = anytime;
+		copy.macros = macros;
+		copy.solutionCache = solutionCache;
+		copy.portfolio = portfolio;
+		copy.portfolioLog = portfolioLog;
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		String search = strategy == SearchStrategy.WEIGHTED_ASTAR ? strategy + "(w=" + weight + ")" : strategy.toString();
+		String threadCount = mode == SearchMode.PARALLEL ? " " + THREADS_ARG + threads
+				: mode == SearchMode.IDA ? " " + MEMORY_ARG + memoryMegabytes
+				: mode == SearchMode.EXTERNAL ? " " + SORT_ARG + sortMegabytes + (spillDirectory != null ? " " + SPILL_ARG + spillDirectory : "")
+				: "";
+		String limits = (anytime ? " " + ANYTIME_ARG : "") + (timeLimitMillis > 0 ? " " + TIME_ARG + timeLimitMillis : "")
+				+ (nodeLimit > 0 ? " " + NODES_ARG + nodeLimit : "") + (solutionCache != null ? " " + CACHE_ARG + solutionCache : "")
+				+ (macros ? "" : " " + NO_MACROS_ARG)
+				+ (offHeap ? " " + OFF_HEAP_ARG + (offHeapDirectory != null ? "=" + offHeapDirectory : "") : "")
+				+ (portfolio ? " " + PORTFOLIO_ARG + (portfolioLog != null ? "=" + portfolioLog : "") : "");
+		return mode + " " + search + " " + heuristic + threadCount + limits;
+	}
+}
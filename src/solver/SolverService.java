@@ -0,0 +1,229 @@
+package solver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Solves many levels at once on a fixed number of worker threads. Every job gets its own SokoBot, so
+ * nothing mutable is shared between solves. A job's time limit counts from when it starts running; a job
+ * may also carry a deadline counted from submission, past which it expires even if it never got to run
+ * or is still waiting for memory.
+ *
+ * Before it runs, a job reserves an estimate of the memory its search may need; jobs whose estimate does
+ * not fit wait until running ones release theirs, and the job's node limit is set so that its search cannot
+ * outgrow the reservation. Levels with small state spaces therefore run side by side while a large one gets
+ * the heap to itself.
+ *
+ * Jobs in the parallel mode start their own search threads on top of the worker that runs them.
+ */
+public class SolverService implements AutoCloseable {
+	// share of the heap jobs may reserve; the rest is left for the JVM and the callers
+	private static final double HEAP_SHARE = 0.75;
+	// memory is counted in kilobytes so that a whole heap fits in the semaphore's permits
+	private static final int KILOBYTE = 1024;
+
+	private final ExecutorService workers;
+	private final Semaphore memory;
+	private final int memoryKilobytes;
+	private final SubmissionPublisher<SolveResult> results = new SubmissionPublisher<>();
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	/* A service with a worker per processor that may reserve three quarters of the heap */
+	public SolverService() {
+		this(Runtime.getRuntime().availableProcessors(), (long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE));
+	}
+
+	public SolverService(int workerCount, long memoryBytes) {
+		this.workers = Executors.newFixedThreadPool(Math.max(1, workerCount), task -> {
+			Thread thread = new Thread(task, "SolverService-worker-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.memoryKilobytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBytes / KILOBYTE));
+		this.memory = new Semaphore(memoryKilobytes, true);
+	}
+
+	/* Queues a level without a deadline; see the other submit */
+	public CompletableFuture<SolveResult> submit(String name, int width, int height, char[][] mapData, char[][] itemsData,
+			SolverConfig config) {
+		return submit(name, width, height, mapData, itemsData, config, 0);
+	}
+
+	/*
+	 * Queues a level and returns a future for its result. The config is copied. A deadline above 0 is in
+	 * milliseconds from now and covers waiting as well as solving. Cancelling the future stops the search
+	 * at its next check.
+	 */
+	public CompletableFuture<SolveResult> submit(String name, int width, int height, char[][] mapData, char[][] itemsData,
+			SolverConfig config, long deadlineMillis) {
+		long deadline = deadlineMillis > 0 ? System.nanoTime() + deadlineMillis * 1_000_000L : Long.MAX_VALUE;
+		Job job = new Job(name, width, height, mapData, itemsData, config.copy(), deadline);
+		job.future.whenComplete((result, ex) -> {
+			if (job.future.isCancelled()) {
+				job.cancel();
+			}
+		});
+		workers.execute(job);
+		return job.future;
+	}
+
+	/* Every result as it finishes, in the order they finish */
+	public Flow.Publisher<SolveResult> results() {
+		return results;
+	}
+
+	/* Kilobytes of the memory budget not reserved by running jobs */
+	public int getFreeKilobytes() {
+		return memory.availablePermits();
+	}
+
+	/* Lets the queued jobs finish, then stops the workers and completes the results publisher */
+	@Override
+	public void close() {
+		workers.shutdown();
+		try {
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+				// keep waiting; jobs end by their own deadlines
+			}
+		} catch (InterruptedException ex) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		results.close();
+	}
+
+	/*
+	 * A rough upper bound, in bytes, on what a search of the level can allocate: the number of box placements
+	 * (times the player positions for the move search, or the player regions for the others) times the bytes
+	 * a state costs, capped by the node limit when one is set. The IDA mode needs its cache and little else,
+	 * and the external mode its sort buffer, since its states are on disk.
+	 */
+	static long estimateBytes(Board board, SolverConfig config) {
+		if (config.mode == SearchMode.IDA) {
+			int boxes = board.getBoxCount();
+			return (long) IterativeDeepeningSearch.slotsFor(config.memoryMegabytes, boxes) * IterativeDeepeningSearch.bytesPerSlot(boxes);
+		}
+		if (config.mode == SearchMode.EXTERNAL) {
+			return config.sortMegabytes << 20;
+		}
+		int open = 0;
+		for (int cell = 0; cell < board.size; cell++) {
+			if (!board.wall[cell]) {
+				open++;
+			}
+		}
+		int boxes = board.getBoxCount();
+
+		double placements = 1;
+		for (int i = 0; i < boxes; i++) {
+			placements = placements * (open - i) / (i + 1);
+		}
+		double states = placements * (config.mode == SearchMode.MOVES ? Math.max(1, open - boxes) : boxes + 1);
+		long perState = bytesPerState(boxes, config.mode);
+		if (config.nodeLimit > 0) {
+			states = Math.min(states, config.nodeLimit);
+		}
+		return (long) Math.min(states * perState, Long.MAX_VALUE);
+	}
+
+	// an arena row and an open-list entry for each generated node, about three per expansion, plus a table slot at half load;
+	// the modes that keep PushNode objects pay about three times that
+	static long bytesPerState(int boxCount, SearchMode mode) {
+		int words = StateTable.wordsFor(boxCount);
+		long bytes = 3L * (4 * Integer.BYTES + words * Long.BYTES + Integer.BYTES) + 2L * (words * Long.BYTES + Long.BYTES + Integer.BYTES);
+		return mode == SearchMode.MOVES || mode == SearchMode.PUSHES ? bytes : 3 * bytes;
+	}
+
+	private class Job implements Runnable {
+		final String name;
+		final int width, height;
+		final char[][] mapData, itemsData;
+		final SolverConfig config;
+		final long deadline;
+		final CompletableFuture<SolveResult> future = new CompletableFuture<>();
+		volatile boolean cancelled;
+		volatile SokoBot bot;
+
+		Job(String name, int width, int height, char[][] mapData, char[][] itemsData, SolverConfig config, long deadline) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+			this.mapData = mapData;
+			this.itemsData = itemsData;
+			this.config = config;
+			this.deadline = deadline;
+		}
+
+		void cancel() {
+			cancelled = true;
+			SokoBot running = bot;
+			if (running != null) {
+				running.cancel();
+			}
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+			SolveResult result;
+			try {
+				result = solve();
+			} catch (Throwable ex) {
+				result = new SolveResult(name, null, new SolveStats(), 0, false, ex);
+			}
+			future.complete(result);
+			results.submit(result);
+		}
+
+		private SolveResult solve() throws InterruptedException {
+			Board board = new Board(width, height, mapData, itemsData);
+			long perState = bytesPerState(board.getBoxCount(), config.mode);
+			int reserved = (int) Math.min(memoryKilobytes, Math.max(1, estimateBytes(board, config) / KILOBYTE));
+
+			// the wait for memory counts against the deadline too
+			long waitNanos = remainingNanos();
+			if (cancelled || waitNanos <= 0 || !memory.tryAcquire(reserved, waitNanos, TimeUnit.NANOSECONDS)) {
+				SolveStats none = new SolveStats();
+				none.stopped = true;
+				return new SolveResult(name, null, none, 0, true, null);
+			}
+
+			try {
+				if (deadline != Long.MAX_VALUE) {
+					long left = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos()));
+					config.timeLimitMillis = config.timeLimitMillis > 0 ? Math.min(config.timeLimitMillis, left) : left;
+				}
+				// the IDA and external modes' memory does not grow with the nodes they search
+				if (config.mode != SearchMode.IDA && config.mode != SearchMode.EXTERNAL) {
+					long allowance = (long) reserved * KILOBYTE / perState;
+					config.nodeLimit = config.nodeLimit > 0 ? Math.min(config.nodeLimit, allowance) : allowance;
+				}
+
+				bot = new SokoBot(config);
+				if (cancelled) {
+					bot.cancel();
+				}
+				long start = System.nanoTime();
+				String solution = bot.solveSokobanPuzzle(width, height, mapData, itemsData);
+				long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				SolveStats stats = bot.getStats();
+				return new SolveResult(name, solution, stats, millis, solution == null && stats.isStopped(), null);
+			} finally {
+				bot = null;
+				memory.release(reserved);
+			}
+		}
+
+		private long remainingNanos() {
+			return deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Maps a state (player cell and sorted box cells) to the lowest cost it was reached with. The searches use
+ * it both as their visited set and as their best-cost table. StateTable keeps it on the heap;
+ * OffHeapStateTable keeps it outside, for searches larger than the heap.
+ */
+public interface StateStore {
+	/* Returns the cost stored for the state, or -1 if the state has not been seen */
+	int get(int player, int[] boxes, long hash);
+
+	/* Stores the cost for the state, replacing any previous cost */
+	void put(int player, int[] boxes, long hash, int cost);
+
+	long size();
+
+	long capacity();
+
+	void clear();
+
+	/* Bytes used per stored state, counting the free slots kept for probing */
+	double bytesPerEntry();
+
+	/* Bytes the store holds, on or off the heap */
+	long bytes();
+
+	/* A store for the given number of boxes, on or off the heap as the config says */
+	static StateStore create(int boxCount, int capacity, SolverConfig config) {
+		if (!config.offHeap) {
+			return new StateTable(boxCount, capacity);
+		}
+		try {
+			return new OffHeapStateTable(boxCount, capacity, config.offHeapDirectory);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package solver;
+
+import java.util.Arrays;
+
+/*
+ * Open-addressing transposition table that maps a state to the lowest cost it was reached with.
+ * A state (player cell followed by the sorted box cells) is packed 16 bits per cell into a
+ * fixed number of longs per slot, so no key objects or boxed values are ever created.
+ */
+public class StateTable implements StateStore {
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	private static final int CELLS_PER_WORD = 4;
+	private static final int EMPTY = 0;
+
+	private final int words;
+	private long[] keys;
+	private long[] hashes;
+	// costs are stored off by one so that 0 marks an empty slot
+	private int[] costs;
+	private int mask;
+	private int size;
+	private int resizeAt;
+
+	public StateTable(int boxCount) {
+		this(boxCount, DEFAULT_CAPACITY);
+	}
+
+	public StateTable(int boxCount, int capacity) {
+		this.words = wordsFor(boxCount);
+		allocate(Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity * words];
+		hashes = new long[capacity];
+		costs = new int[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity / 4 * 3;
+	}
+
+	@Override
+	public int get(int player, int[] boxes, long hash) {
+		int slot = find(player, boxes, hash);
+		return costs[slot] == EMPTY ? -1 : costs[slot] - 1;
+	}
+
+	@Override
+	public void put(int player, int[] boxes, long hash, int cost) {
+		int slot = find(player, boxes, hash);
+		if (costs[slot] == EMPTY) {
+			hashes[slot] = hash;
+			pack(player, boxes, keys, slot * words);
+			if (++size > resizeAt) {
+				costs[slot] = cost + 1;
+				grow();
+				return;
+			}
+		}
+		costs[slot] = cost + 1;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public long capacity() {
+		return costs.length;
+	}
+
+	// linear probing from the hash's home slot until the state or an empty slot is found
+	private int find(int player, int[] boxes, long hash) {
+		int slot = home(hash);
+		while (costs[slot] != EMPTY) {
+			if (hashes[slot] == hash && matches(keys, slot * words, player, boxes)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private int home(long hash) {
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	/* Whether the state packed at the offset is the given one */
+	static boolean matches(long[] keys, int offset, int player, int[] boxes) {
+		long word = 0;
+		int shift = 0, w = offset;
+
+		for (int i = -1; i < boxes.length; i++) {
+			long cell = i < 0 ? player : boxes[i];
+			word |= cell << shift;
+			shift += 16;
+			if (shift == 64) {
+				if (keys[w++] != word) {
+					return false;
+				}
+				word = 0;
+				shift = 0;
+			}
+		}
+
+		return shift == 0 || keys[w] == word;
+	}
+
+	/* Longs needed to pack a state with the given number of boxes */
+	static int wordsFor(int boxCount) {
+		return (boxCount + 1 + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+	}
+
+	/* Reverses pack: fills boxes with the box cells stored at offset and returns the player cell */
+	static int unpack(long[] src, int offset, int[] boxes) {
+		int player = (int) (src[offset] & 0xFFFF);
+		for (int i = 0; i < boxes.length; i++) {
+			int index = i + 1;
+			boxes[i] = (int) ((src[offset + index / CELLS_PER_WORD] >>> (16 * (index % CELLS_PER_WORD))) & 0xFFFF);
+		}
+		return player;
+	}
+
+	@Override
+	public double bytesPerEntry() {
+		return size == 0 ? 0 : (double) bytes() / size;
+	}
+
+	@Override
+	public long bytes() {
+		return (long) costs.length * (words * Long.BYTES + Long.BYTES + Integer.BYTES);
+	}
+
+	/* Packs the player cell and the box cells 16 bits at a time into dest starting at offset */
+	static void pack(int player, int[] boxes, long[] dest, int offset) {
+		long word = 0;
+		int shift = 0, w = offset;
+
+		for (int i = -1; i < boxes.length; i++) {
+			long cell = i < 0 ? player : boxes[i];
+			word |= cell << shift;
+			shift += 16;
+			if (shift == 64) {
+				dest[w++] = word;
+				word = 0;
+				shift = 0;
+			}
+		}
+
+		if (shift != 0) {
+			dest[w] = word;
+		}
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldHashes = hashes;
+		int[] oldCosts = costs;
+
+		allocate(oldCosts.length * 2);
+
+		for (int i = 0; i < oldCosts.length; i++) {
+			if (oldCosts[i] == EMPTY) {
+				continue;
+			}
+			int slot = home(oldHashes[i]);
+			while (costs[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			hashes[slot] = oldHashes[i];
+			costs[slot] = oldCosts[i];
+			System.arraycopy(oldKeys, i * words, keys, slot * words, words);
+		}
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(costs, EMPTY);
+		size = 0;
+	}
+}
@@ -0,0 +1,28 @@
+package solver;
+
+/*
+ * The children of one expanded node as rows of parallel primitive arrays, reused from node to node so
+ * that generating children allocates nothing. Filled by PushExpander.expand and valid until its next call.
+ */
+class Successors {
+	int count;
+	final int[] player;
+	final int[][] boxes;
+	final long[] boxHash;
+	// pushes past the parent, more than one when a macro carried the box on
+	final int[] pushes;
+	// the pushed box's cell before the push and the push direction
+	final int[] boxFrom;
+	final int[] dir;
+	final int[] hcost;
+
+	Successors(int capacity, int boxCount) {
+		this.player = new int[capacity];
+		this.boxes = new int[capacity][boxCount];
+		this.boxHash = new long[capacity];
+		this.pushes = new int[capacity];
+		this.boxFrom = new int[capacity];
+		this.dir = new int[capacity];
+		this.hcost = new int[capacity];
+	}
+}
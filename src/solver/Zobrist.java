@@ -0,0 +1,44 @@
+package solver;
+
+import java.util.SplittableRandom;
+
+/*
+ * Zobrist keys for the player and box cells of a board.
+ * A state's hash is the XOR of the keys of its occupied cells, so moving a box
+ * only needs two XORs instead of rehashing the whole state.
+ */
+public class Zobrist {
+	private static final long SEED = 0x5DEECE66DL;
+
+	final long[] box;
+	final long[] player;
+
+	public Zobrist(int cells) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		box = new long[cells];
+		player = new long[cells];
+		for (int i = 0; i < cells; i++) {
+			box[i] = random.nextLong();
+			player[i] = random.nextLong();
+		}
+	}
+
+	/* Hash of a set of box cells, independent of their order */
+	long hashBoxes(int[] boxes) {
+		long hash = 0;
+		for (int cell : boxes) {
+			hash ^= box[cell];
+		}
+		return hash;
+	}
+
+	/* Updates a box hash after one box moved between two cells */
+	long moveBox(long boxHash, int from, int to) {
+		return boxHash ^ box[from] ^ box[to];
+	}
+
+	/* Combines a box hash with the player's cell into the full state hash */
+	long withPlayer(long boxHash, int playerCell) {
+		return boxHash ^ player[playerCell];
+	}
+}